@@ -0,0 +1,186 @@
+package net.ildar.wurm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * The action sent to the server together with the event messages that confirm it.
+ * The action is resent until a start, finish or failure message arrives or the attempts run out.
+ * The futures complete right from the chat callback, so the waiting bot doesn't poll any flags.
+ */
+public class ActionRequest {
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ActionRequest scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Runnable sender;
+    private Function<String, Boolean> startFilter;
+    private Function<String, Boolean> finishFilter;
+    private Function<String, Boolean> failureFilter;
+    private long retryDelay = 500;
+    private int maxAttempts = 50;
+    private long finishTimeout = 200000;
+    private BooleanSupplier pauseCondition = () -> false;
+
+    private final CompletableFuture<Result> start = new CompletableFuture<>();
+    private final CompletableFuture<Result> finish = new CompletableFuture<>();
+    private final List<Chat.MessageProcessor> messageProcessors = new ArrayList<>();
+    private int attempts;
+    private ScheduledFuture<?> resend;
+    private ScheduledFuture<?> finishTimer;
+
+    /**
+     * @param sender sends the action. Called again on each retry
+     */
+    public ActionRequest(Runnable sender) {
+        this.sender = sender;
+    }
+
+    public ActionRequest startedOn(Function<String, Boolean> filter) {
+        this.startFilter = filter;
+        return this;
+    }
+
+    /**
+     * Without the finish filter the action is considered finished when it is started
+     */
+    public ActionRequest finishedOn(Function<String, Boolean> filter) {
+        this.finishFilter = filter;
+        return this;
+    }
+
+    public ActionRequest failedOn(Function<String, Boolean> filter) {
+        this.failureFilter = filter;
+        return this;
+    }
+
+    public ActionRequest retry(long retryDelay, int maxAttempts) {
+        this.retryDelay = retryDelay;
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    public ActionRequest finishTimeout(long finishTimeout) {
+        this.finishTimeout = finishTimeout;
+        return this;
+    }
+
+    /**
+     * The action isn't resent while the condition holds and the skipped attempts aren't counted,
+     * so the request goes on after the pause of the bot
+     */
+    public ActionRequest pausedWhile(BooleanSupplier pauseCondition) {
+        this.pauseCondition = pauseCondition;
+        return this;
+    }
+
+    /**
+     * Sends the action and starts to listen for the events
+     *
+     * @return the future that completes when the action is started, finished or failed, or with {@link Result#TIMEOUT}
+     * when no event came after all attempts
+     */
+    public synchronized CompletableFuture<Result> send() {
+        if (resend != null)
+            return start;
+        if (startFilter != null)
+            register(startFilter, Result.STARTED);
+        if (finishFilter != null)
+            register(finishFilter, Result.FINISHED);
+        if (failureFilter != null)
+            register(failureFilter, Result.FAILED);
+        resend = scheduler.scheduleWithFixedDelay(this::attempt, 0, retryDelay, TimeUnit.MILLISECONDS);
+        return start;
+    }
+
+    public CompletableFuture<Result> getStart() {
+        return start;
+    }
+
+    /**
+     * @return the future that completes when the action is finished or failed
+     */
+    public CompletableFuture<Result> getFinish() {
+        return finish;
+    }
+
+    /**
+     * Waits for the start of the action. The request is cancelled if the waiting thread is interrupted
+     */
+    public Result awaitStart() throws InterruptedException {
+        return await(send());
+    }
+
+    /**
+     * Waits for the end of the action
+     */
+    public Result awaitFinish() throws InterruptedException {
+        send();
+        return await(finish);
+    }
+
+    /**
+     * Stops resending the action and listening for the events
+     */
+    public void cancel() {
+        complete(Result.TIMEOUT);
+    }
+
+    private Result await(CompletableFuture<Result> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            cancel();
+            throw e;
+        } catch (ExecutionException e) {
+            return Result.FAILED;
+        }
+    }
+
+    private void register(Function<String, Boolean> filter, Result result) {
+        messageProcessors.add(Chat.registerMessageProcessor(":Event", filter, () -> complete(result)));
+    }
+
+    private synchronized void attempt() {
+        if (start.isDone() || pauseCondition.getAsBoolean())
+            return;
+        if (attempts++ >= maxAttempts) {
+            complete(Result.TIMEOUT);
+            return;
+        }
+        try {
+            sender.run();
+        } catch (Exception e) {
+            Utils.consolePrint("Can't send the action - " + e.getMessage());
+            complete(Result.FAILED);
+        }
+    }
+
+    private synchronized void complete(Result result) {
+        if (resend != null)
+            resend.cancel(false);
+        start.complete(result);
+        if (result == Result.STARTED && finishFilter != null) {
+            if (finishTimer == null)
+                finishTimer = scheduler.schedule(() -> complete(Result.TIMEOUT), finishTimeout, TimeUnit.MILLISECONDS);
+            return;
+        }
+        if (finishTimer != null)
+            finishTimer.cancel(false);
+        finish.complete(result);
+        messageProcessors.forEach(Chat::unregisterMessageProcessor);
+        messageProcessors.clear();
+    }
+
+    public enum Result {
+        STARTED,
+        FINISHED,
+        FAILED,
+        TIMEOUT
+    }
+}
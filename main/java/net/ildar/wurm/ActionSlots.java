@@ -0,0 +1,113 @@
+package net.ildar.wurm;
+
+import java.util.*;
+
+/**
+ * Shares the action queue of the player between the running bots.
+ * Each active bot gets a part of {@link Utils#getMaxActionNumber()} slots proportional to its weight,
+ * so several bots together don't send more actions than the server accepts.
+ * A bot is active while it keeps asking for slots. The bot is identified by its thread,
+ * the slots of a bot are released when the bot stops.
+ */
+public class ActionSlots {
+    public static final int DEFAULT_WEIGHT = 1;
+    //the bots that didn't ask for slots in this time don't get a share
+    private static final long ACTIVITY_TIMEOUT = 10000;
+
+    private static final Map<Thread, Holder> holders = new HashMap<>();
+
+    /**
+     * @return the number of actions the current thread may have in the queue, at least 1
+     */
+    public static int getShare() {
+        synchronized (holders) {
+            return getShare(touch(Thread.currentThread()), System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * The share provided thread would get, without marking it as active. For reporting the share from other threads
+     */
+    public static int peekShare(Thread owner) {
+        synchronized (holders) {
+            Holder holder = holders.get(owner);
+            return getShare(holder == null ? new Holder() : holder, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Takes up to provided number of slots from the share of the current thread.
+     * The slots are returned with {@link #release(int)} when the actions are done or on their own after the ttl.
+     *
+     * @return the number of granted slots
+     */
+    public static int acquire(int count, long ttl) {
+        synchronized (holders) {
+            Holder holder = touch(Thread.currentThread());
+            long now = System.currentTimeMillis();
+            holder.leases.removeIf(expirationTime -> expirationTime <= now);
+            int granted = Math.max(0, Math.min(count, getShare(holder, now) - holder.leases.size()));
+            for (int i = 0; i < granted; i++)
+                holder.leases.add(now + ttl);
+            return granted;
+        }
+    }
+
+    /**
+     * Releases the provided number of slots of the current thread, the ones closest to expiration go first
+     */
+    public static void release(int count) {
+        synchronized (holders) {
+            Holder holder = holders.get(Thread.currentThread());
+            if (holder == null)
+                return;
+            for (int i = 0; i < count && !holder.leases.isEmpty(); i++)
+                holder.leases.poll();
+        }
+    }
+
+    /**
+     * Removes the provided thread from the arbitration, its share goes to the other bots
+     */
+    public static void releaseAll(Thread owner) {
+        synchronized (holders) {
+            holders.remove(owner);
+        }
+    }
+
+    public static void setWeight(Thread owner, int weight) {
+        synchronized (holders) {
+            holders.computeIfAbsent(owner, thread -> new Holder()).weight = Math.max(1, weight);
+        }
+    }
+
+    public static int getWeight(Thread owner) {
+        synchronized (holders) {
+            Holder holder = holders.get(owner);
+            return holder == null ? DEFAULT_WEIGHT : holder.weight;
+        }
+    }
+
+    private static Holder touch(Thread owner) {
+        Holder holder = holders.computeIfAbsent(owner, thread -> new Holder());
+        holder.lastRequest = System.currentTimeMillis();
+        return holder;
+    }
+
+    private static int getShare(Holder holder, long now) {
+        int totalWeight = holder.weight;
+        for (Holder other : holders.values())
+            if (other != holder && Math.abs(now - other.lastRequest) <= ACTIVITY_TIMEOUT)
+                totalWeight += other.weight;
+        int maxActions = Utils.getMaxActionNumber();
+        if (totalWeight <= holder.weight)
+            return Math.max(1, maxActions);
+        return Math.max(1, maxActions * holder.weight / totalWeight);
+    }
+
+    private static class Holder {
+        final PriorityQueue<Long> leases = new PriorityQueue<>();
+        int weight = DEFAULT_WEIGHT;
+        long lastRequest;
+    }
+}
@@ -14,6 +14,10 @@ public class BotClassLoader extends ClassLoader {
         this.jarFilePath = jarFilePath;
     }
 
+    public ClassLoader getDefaultLoader() {
+        return defaultLoader;
+    }
+
     public static byte[] readStream(InputStream fin) throws IOException {
         byte[][] bufs = new byte[8][];
         int bufsize = 4096;
@@ -44,29 +48,25 @@ public class BotClassLoader extends ClassLoader {
     protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
         if (!name.startsWith("net.ildar.wurm.bot"))
             return defaultLoader.loadClass(name);
-        try {
-            byte[] b = loadClassData(name);
-            return defineClass(name, b, 0, b.length);
-        } catch (Exception e) {
-            Utils.consolePrint("BotClassLoader: " + e);
-            return defaultLoader.loadClass(name);
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> loadedClass = findLoadedClass(name);
+            if (loadedClass != null)
+                return loadedClass;
+            try {
+                byte[] b = loadClassData(name);
+                return defineClass(name, b, 0, b.length);
+            } catch (Exception e) {
+                Utils.consolePrint("BotClassLoader: " + e);
+                return defaultLoader.loadClass(name);
+            }
         }
     }
 
     private byte[] loadClassData(String name) throws IOException {
         try (JarFile jarFile = new JarFile(jarFilePath)) {
-            JarEntry entry = jarFile.stream().filter(jarEntry -> {
-                        int extPos = jarEntry.getName().lastIndexOf(".class");
-                        if (extPos == -1)
-                            return false;
-                        String jarEntryClassName = jarEntry
-                                .getName()
-                                .substring(0, extPos)
-                                .replaceAll("/", ".");
-                        return jarEntryClassName.equals(name);
-                    })
-                    .findFirst()
-                    .orElseThrow(() -> new IOException("BotClassLoader: could not find class " + name));
+            JarEntry entry = jarFile.getJarEntry(name.replace('.', '/') + ".class");
+            if (entry == null)
+                throw new IOException("BotClassLoader: could not find class " + name);
             return readStream(jarFile.getInputStream(entry));
         }
     }
@@ -1,11 +1,9 @@
 package net.ildar.wurm;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.function.Predicate;
-import java.util.jar.JarFile;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -34,29 +32,7 @@ public class BotController {
     }
 
     private synchronized void initBotRegistrations() {
-        try (JarFile jarFile = new JarFile(jarFilePath)) {
-            jarFile.stream().forEach((jarEntry) -> {
-                if (!jarEntry.getName().endsWith(".class"))
-                    return;
-                String jarEntryClassName = jarEntry.getName()
-                        .substring(0, jarEntry.getName().length() - ".class".length())
-                        .replaceAll("/", ".");
-                try {
-                    Class<?> jarEntryClass = Class.forName(jarEntryClassName, true, botClassLoader);
-                    if (!jarEntryClassName.endsWith("Bot"))
-                        return;
-                    BotRegistration newRegistration = (BotRegistration) jarEntryClass.getDeclaredMethod("getRegistration").invoke(null);
-                    botList.add(newRegistration);
-
-                } catch (ClassNotFoundException e) {
-                    Utils.consolePrint("Couldn't find a class with name " + jarEntryClassName);
-                } catch (Exception e) {
-                    Utils.consolePrint(e.toString());
-                }
-            });
-        } catch (IOException e) {
-            Utils.consolePrint(e.toString());
-        }
+        botList.addAll(BotIndex.read(jarFilePath, botClassLoader));
     }
 
     public synchronized void handleInput(String[] data) {
@@ -81,6 +57,10 @@ public class BotController {
                 pauseAllBots();
                 Utils.writeToConsoleInputLine("pause");
                 return;
+            case "pipe":
+                handlePipeInput(Arrays.copyOfRange(data, 1, data.length));
+                Utils.writeToConsoleInputLine("pipe");
+                return;
         }
         BotProxy proxy = getBotProxy(data[0]);
         if (proxy == null) {
@@ -134,6 +114,8 @@ public class BotController {
 
     private synchronized void reloadAllBots() {
         deactivateAllBots();
+        //the links refer to the proxies of the old bot classes
+        Pipeline.clear();
         botList.clear();
         initBotRegistrations();
         Utils.consolePrint("Reloaded: " + botList
@@ -144,14 +126,15 @@ public class BotController {
     }
 
     public synchronized void onBotInterrupted(Class<? extends Thread> botClass) {
-        botList.stream().map(BotRegistration::getProxy).filter(bp -> bp.getBotClass() == botClass).forEach(BotProxy::deinstantiate);
+        botList.stream().map(BotRegistration::getProxy).filter(bp -> bp.isFor(botClass)).forEach(BotProxy::deinstantiate);
     }
 
     private synchronized void pauseAllBots() {
         if (getActiveBots().findFirst().isPresent()) {
             gPaused = !gPaused;
             if (gPaused) {
-                getActiveBots().forEach(BotProxy::setPaused);
+                Utils.stopActions();
+                getActiveBots().forEach(BotProxy::setPausedWithoutStop);
             } else {
                 getActiveBots().forEach(BotProxy::setResumed);
             }
@@ -161,6 +144,50 @@ public class BotController {
         }
     }
 
+    /**
+     * "pipe" lists the links, "pipe off" removes them, "pipe producer category consumer" adds a link
+     */
+    private void handlePipeInput(String[] input) {
+        if (input.length == 0) {
+            List<String> links = Pipeline.describe();
+            if (links.isEmpty())
+                Utils.consolePrint("No pipeline links");
+            links.forEach(Utils::consolePrint);
+            return;
+        }
+        if (input.length == 1 && input[0].equals("off")) {
+            Pipeline.clear();
+            Utils.consolePrint("All pipeline links are removed");
+            return;
+        }
+        if (input.length != 3) {
+            Utils.consolePrint(getPipeUsageString());
+            return;
+        }
+        BotProxy producer = getBotProxy(input[0]);
+        BotProxy consumer = getBotProxy(input[2]);
+        if (producer == null || consumer == null) {
+            Utils.consolePrint("Didn't find a bot with abbreviation \"" + (producer == null ? input[0] : input[2]) + "\"");
+            return;
+        }
+        ItemClassifier.Category category;
+        try {
+            category = ItemClassifier.Category.valueOf(input[1].toUpperCase());
+        } catch (IllegalArgumentException e) {
+            Utils.consolePrint("Unknown category \"" + input[1] + "\"");
+            Utils.consolePrint(getPipeUsageString());
+            return;
+        }
+        Pipeline.link(producer, category, consumer);
+        Utils.consolePrint(producer.getSimpleName() + " now feeds " + consumer.getSimpleName() + " with " + input[1] + " items");
+    }
+
+    private String getPipeUsageString() {
+        return "Usage: " + Mod.ConsoleCommand.bot.name() + " pipe [off|producer {"
+                + Arrays.stream(ItemClassifier.Category.values()).map(category -> category.name().toLowerCase()).collect(Collectors.joining("|"))
+                + "} consumer]";
+    }
+
     public void printBotDescription(BotProxy proxy) {
         BotRegistration botRegistration = getBotRegistration(proxy);
         String description = "no description";
@@ -182,7 +209,7 @@ public class BotController {
         StringBuilder result = new StringBuilder("Usage: " + Mod.ConsoleCommand.bot.name() + " {");
         for (BotRegistration botRegistration : botList)
             result.append(botRegistration.getAbbreviation()).append("|");
-        result.append("pause|off}");
+        result.append("pause|pipe|off}");
         return result.toString();
     }
 
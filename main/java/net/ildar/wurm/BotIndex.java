@@ -0,0 +1,112 @@
+package net.ildar.wurm;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * The index of the bots in the mod jar with the abbreviation, the class name and the description of each bot.
+ * The index file is generated next to the jar on the first start after the jar was changed.
+ * After that the registrations are read from the file and the bot classes are loaded only when the bots are activated.
+ */
+class BotIndex {
+    private static final String FILE_NAME = "bots.index";
+    private static final String BOT_PACKAGE_PATH = "net/ildar/wurm/bot/";
+
+    /**
+     * @param classLoader the loader of the bot classes for the registrations
+     */
+    static List<BotRegistration> read(String jarFilePath, BotClassLoader classLoader) {
+        File jarFile = new File(jarFilePath);
+        File indexFile = new File(jarFile.getAbsoluteFile().getParentFile(), FILE_NAME);
+        String header = "#" + jarFile.lastModified() + " " + jarFile.length();
+        List<String> lines = null;
+        try {
+            if (indexFile.exists()) {
+                lines = Files.readAllLines(indexFile.toPath(), StandardCharsets.UTF_8);
+                if (lines.isEmpty() || !lines.get(0).equals(header))
+                    lines = null;
+            }
+        } catch (IOException e) {
+            Utils.consolePrint("Can't read the bot index - " + e.getMessage());
+        }
+        if (lines == null) {
+            lines = new ArrayList<>();
+            lines.add(header);
+            //an incomplete index is used for this start only, the next start tries again
+            if (generate(jarFilePath, classLoader.getDefaultLoader(), lines)) {
+                try {
+                    Files.write(indexFile.toPath(), lines, StandardCharsets.UTF_8);
+                } catch (IOException e) {
+                    Utils.consolePrint("Can't write the bot index - " + e.getMessage());
+                }
+            } else
+                Utils.consolePrint("The bot index is incomplete and won't be saved");
+        }
+        List<BotRegistration> registrations = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split("\t", 3);
+            if (fields.length != 3)
+                continue;
+            registrations.add(new BotRegistration(fields[1], classLoader, unescape(fields[2]), fields[0]));
+        }
+        return registrations;
+    }
+
+    /**
+     * Loads the bot classes with a throwaway class loader to get their registrations
+     *
+     * @param lines the list the lines of the index are added to
+     * @return false if any of the bots couldn't be registered or the jar couldn't be read
+     */
+    private static boolean generate(String jarFilePath, ClassLoader parent, List<String> lines) {
+        boolean complete = true;
+        BotClassLoader scanLoader = new BotClassLoader(parent, jarFilePath);
+        try (JarFile jarFile = new JarFile(jarFilePath)) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                String entryName = entries.nextElement().getName();
+                if (!entryName.startsWith(BOT_PACKAGE_PATH) || !entryName.endsWith("Bot.class") || entryName.contains("$"))
+                    continue;
+                String className = entryName
+                        .substring(0, entryName.length() - ".class".length())
+                        .replace('/', '.');
+                try {
+                    Class<?> botClass = Class.forName(className, false, scanLoader);
+                    BotRegistration registration = (BotRegistration) botClass.getDeclaredMethod("getRegistration").invoke(null);
+                    lines.add(registration.getAbbreviation() + "\t" + className + "\t" + escape(registration.getDescription()));
+                } catch (Exception | LinkageError e) {
+                    Utils.consolePrint("Couldn't register the bot " + className + " - " + e);
+                    complete = false;
+                }
+            }
+        } catch (IOException e) {
+            Utils.consolePrint(e.toString());
+            complete = false;
+        }
+        return complete;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    private static String unescape(String value) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                result.append(next == 't' ? '\t' : next == 'n' ? '\n' : next);
+            } else
+                result.append(c);
+        }
+        return result.toString();
+    }
+}
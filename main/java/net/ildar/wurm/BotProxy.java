@@ -2,26 +2,69 @@ package net.ildar.wurm;
 
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 public final class BotProxy {
-    private final Class<? extends Thread> botClass;
+    //the boxed arguments of the calls are matched to the primitive parameters of the bot methods
+    private static final Map<Class<?>, Class<?>> primitiveTypes = new HashMap<>();
+
+    static {
+        primitiveTypes.put(Boolean.class, boolean.class);
+        primitiveTypes.put(Integer.class, int.class);
+        primitiveTypes.put(Long.class, long.class);
+        primitiveTypes.put(Float.class, float.class);
+        primitiveTypes.put(Double.class, double.class);
+    }
+
+    private final String botClassName;
+    private final ClassLoader classLoader;
+    private Class<? extends Thread> botClass;
     private Thread botInstance = null;
 
     public BotProxy(Class<? extends Thread> botClass) {
+        this.botClassName = botClass.getName();
+        this.classLoader = botClass.getClassLoader();
         this.botClass = botClass;
     }
 
-    public Class<? extends Thread> getBotClass() {
+    /**
+     * The proxy of the bot class that isn't loaded yet
+     */
+    public BotProxy(String botClassName, ClassLoader classLoader) {
+        this.botClassName = botClassName;
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Loads the bot class on first call
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized Class<? extends Thread> getBotClass() {
+        if (botClass == null) {
+            try {
+                botClass = (Class<? extends Thread>) Class.forName(botClassName, true, classLoader);
+            } catch (ClassNotFoundException e) {
+                throw new RuntimeException(e);
+            }
+        }
         return botClass;
     }
 
+    /**
+     * @return true if the proxy is for provided class. Doesn't load the bot class
+     */
+    public synchronized boolean isFor(Class<?> botClass) {
+        return this.botClass != null && this.botClass == botClass;
+    }
+
     public String getSimpleName() {
-        return botClass.getSimpleName();
+        return botClassName.substring(botClassName.lastIndexOf('.') + 1);
     }
 
     public void instantiate() {
         try {
-            botInstance = botClass.newInstance();
+            botInstance = getBotClass().newInstance();
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -40,9 +83,11 @@ public final class BotProxy {
     }
 
     private Object call(String methodName, Object... parameters) {
-        Class<?>[] parameterTypes = Arrays.stream(parameters).map(Object::getClass).toArray(Class<?>[]::new);
+        Class<?>[] parameterTypes = Arrays.stream(parameters)
+                .map(parameter -> primitiveTypes.getOrDefault(parameter.getClass(), parameter.getClass()))
+                .toArray(Class<?>[]::new);
         try {
-            Method run = botClass.getMethod(methodName, parameterTypes);
+            Method run = getBotClass().getMethod(methodName, parameterTypes);
             return run.invoke(botInstance, parameters);
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -57,10 +102,22 @@ public final class BotProxy {
         call("setPaused");
     }
 
+    public void setPausedWithoutStop() {
+        call("setPausedWithoutStop");
+    }
+
     public void setResumed() {
         call("setResumed");
     }
 
+    public void hold(long duration) {
+        call("hold", duration);
+    }
+
+    public void unhold() {
+        call("unhold");
+    }
+
     public void deactivate() {
         call("deactivate");
     }
@@ -11,6 +11,15 @@ public class BotRegistration {
         this.abbreviation = abbreviation;
     }
 
+    /**
+     * The registration from the bot index. The bot class is loaded when the bot is activated
+     */
+    public BotRegistration(String botClassName, ClassLoader classLoader, String description, String abbreviation) {
+        this.proxy = new BotProxy(botClassName, classLoader);
+        this.description = description;
+        this.abbreviation = abbreviation;
+    }
+
     public BotProxy getProxy() {
         return proxy;
     }
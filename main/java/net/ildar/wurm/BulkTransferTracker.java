@@ -0,0 +1,146 @@
+package net.ildar.wurm;
+
+import com.wurmonline.client.renderer.gui.BmlWindowComponent;
+import org.gotti.wurmunlimited.modloader.ReflectionUtil;
+
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Transfers from bulk storages waiting for the "Removing items" window.
+ * The server answers the transfers in the order they were sent, so each window is correlated with the oldest
+ * transfer that didn't get one yet. The window is submitted right in the HUD hook and never shown.
+ * Each transfer belongs to the thread that sent it, so several bots can transfer at once.
+ * Lives outside of the bot package, so the hook and the bots loaded by {@link BotClassLoader} share the same state.
+ */
+public class BulkTransferTracker {
+    private static final String WINDOW_TITLE = "Removing items";
+    private static final long TRANSFER_TIMEOUT = 5000;
+
+    private static final Map<Long, Transfer> pendingTransfers = new LinkedHashMap<>();
+    private static long lastTransferId;
+
+    /**
+     * Registers the transfer and moves the item
+     *
+     * @return the future that completes with true when the window of the transfer was submitted
+     * and with false when the transfer failed or timed out
+     */
+    public static CompletableFuture<Boolean> transfer(long sourceId, long targetId) {
+        Transfer transfer;
+        synchronized (BulkTransferTracker.class) {
+            expireTransfers();
+            transfer = new Transfer(++lastTransferId, sourceId, Thread.currentThread());
+            pendingTransfers.put(transfer.id, transfer);
+        }
+        Mod.hud.getWorld().getServerConnection().sendMoveSomeItems(targetId, new long[]{sourceId});
+        return transfer.result;
+    }
+
+    /**
+     * Fails the transfers that didn't get their window in time
+     */
+    public static synchronized void expire() {
+        expireTransfers();
+    }
+
+    /**
+     * Called from the HUD hook for each new window
+     *
+     * @return true if the window was submitted and mustn't be added to the HUD
+     */
+    public static boolean onWindowAdded(Object component) {
+        if (!(component instanceof BmlWindowComponent))
+            return false;
+        Transfer transfer;
+        synchronized (BulkTransferTracker.class) {
+            expireTransfers();
+            if (pendingTransfers.isEmpty())
+                return false;
+            try {
+                String title = ReflectionUtil.getPrivateField(component, ReflectionUtil.getField(component.getClass(), "title"));
+                if (!WINDOW_TITLE.equals(title))
+                    return false;
+            } catch (Exception e) {
+                Utils.consolePrint("Can't get the title of the window - " + e.getMessage());
+                return false;
+            }
+            Iterator<Transfer> iterator = pendingTransfers.values().iterator();
+            transfer = iterator.next();
+            iterator.remove();
+        }
+        try {
+            Method clickButton = ReflectionUtil.getMethod(component.getClass(), "processButtonPressed");
+            clickButton.setAccessible(true);
+            clickButton.invoke(component, "submit");
+            transfer.result.complete(true);
+        } catch (Exception e) {
+            Utils.consolePrint("Can't submit the window of transfer from " + transfer.sourceId + " - " + e.getMessage());
+            transfer.result.complete(false);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Fails the oldest pending transfer if it belongs to the owner, e.g. when the server says the source is busy.
+     * The message doesn't name the source, but the server answers in order, so it is meant for the oldest transfer.
+     * Each bot gets the message, only the owner of that transfer fails it
+     */
+    public static void failOldest(Thread owner) {
+        Transfer transfer;
+        synchronized (BulkTransferTracker.class) {
+            Iterator<Transfer> iterator = pendingTransfers.values().iterator();
+            if (!iterator.hasNext())
+                return;
+            transfer = iterator.next();
+            if (transfer.owner != owner)
+                return;
+            iterator.remove();
+        }
+        transfer.result.complete(false);
+    }
+
+    /**
+     * Cancels the pending transfers sent by the owner
+     */
+    public static void cancelAll(Thread owner) {
+        synchronized (BulkTransferTracker.class) {
+            for (Iterator<Transfer> iterator = pendingTransfers.values().iterator(); iterator.hasNext(); ) {
+                Transfer transfer = iterator.next();
+                if (transfer.owner != owner)
+                    continue;
+                iterator.remove();
+                transfer.result.complete(false);
+            }
+        }
+    }
+
+    private static void expireTransfers() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Transfer> iterator = pendingTransfers.values().iterator(); iterator.hasNext(); ) {
+            Transfer transfer = iterator.next();
+            if (Math.abs(now - transfer.sendTime) <= TRANSFER_TIMEOUT)
+                break;
+            iterator.remove();
+            transfer.result.complete(false);
+        }
+    }
+
+    private static class Transfer {
+        final long id;
+        final long sourceId;
+        final Thread owner;
+        final long sendTime = System.currentTimeMillis();
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        Transfer(long id, long sourceId, Thread owner) {
+            this.id = id;
+            this.sourceId = sourceId;
+            this.owner = owner;
+        }
+    }
+}
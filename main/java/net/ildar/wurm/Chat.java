@@ -3,14 +3,14 @@ package net.ildar.wurm;
 import com.wurmonline.shared.util.MulticolorLineSegment;
 import net.ildar.wurm.bot.GuardBot;
 
-import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Function;
 
 public class Chat {
-    private static final List<MessageProcessor> messageProcessors = new ArrayList<>();
+    private static final List<MessageProcessor> messageProcessors = new CopyOnWriteArrayList<>();
 
     //On message in tabName: if (filter.apply(message)) callback.run()
     public static MessageProcessor registerMessageProcessor(String tabName, Function<String, Boolean> filter, Runnable callback) {
@@ -0,0 +1,117 @@
+package net.ildar.wurm;
+
+import com.wurmonline.client.game.inventory.InventoryMetaItem;
+import com.wurmonline.shared.constants.PlayerAction;
+
+import java.util.*;
+
+/**
+ * Plans and sends the combine actions.
+ * Items are grouped by kind, rare items are skipped,
+ * and every group is split into batches that fit the server limits and an optional weight cap.
+ */
+public class CombinePlanner {
+    /**
+     * The maximum number of items the server accepts in one combine action
+     */
+    public static final int MAX_ITEMS_PER_ACTION = 64;
+
+    /**
+     * Combine provided items without a weight limit
+     *
+     * @return the number of sent combine actions
+     */
+    public static int combine(Collection<InventoryMetaItem> items) {
+        return combine(items, 0);
+    }
+
+    /**
+     * Combine provided items so that no resulting item exceeds the weight cap
+     *
+     * @param maxWeight the weight cap in kilograms. Zero or less means no cap
+     * @return the number of sent combine actions
+     */
+    public static int combine(Collection<InventoryMetaItem> items, float maxWeight) {
+        List<long[]> batches = plan(items, maxWeight);
+        for (long[] batch : batches)
+            Mod.hud.getWorld().getServerConnection().sendAction(batch[0], batch, PlayerAction.COMBINE);
+        return batches.size();
+    }
+
+    /**
+     * The items of the batches are reserved in {@link ItemReservations} for the current thread,
+     * the items reserved by others are skipped
+     *
+     * @param maxWeight the weight cap in kilograms. Zero or less means no cap
+     * @return item id batches, one combine action for each. The first id of a batch is the action source
+     */
+    public static List<long[]> plan(Collection<InventoryMetaItem> items, float maxWeight) {
+        List<long[]> batches = new ArrayList<>();
+        if (items == null)
+            return batches;
+        Map<String, List<InventoryMetaItem>> groups = new LinkedHashMap<>();
+        for (InventoryMetaItem item : items) {
+            if (item.getRarity() != 0 || ItemReservations.isReserved(item.getId()))
+                continue;
+            if (maxWeight > 0 && item.getWeight() >= maxWeight)
+                continue;
+            groups.computeIfAbsent(item.getBaseName() + "#" + item.getMaterialId(), k -> new ArrayList<>()).add(item);
+        }
+        for (List<InventoryMetaItem> group : groups.values()) {
+            if (group.size() < 2)
+                continue;
+            if (maxWeight > 0)
+                packByWeight(group, maxWeight, batches);
+            else
+                packByCount(group, batches);
+        }
+        //only the items that will be combined are reserved
+        List<long[]> reservedBatches = new ArrayList<>();
+        for (long[] batch : batches) {
+            long[] reservedBatch = ItemReservations.reserve(batch, ItemReservations.DEFAULT_TTL);
+            if (reservedBatch.length > 1)
+                reservedBatches.add(reservedBatch);
+            else if (reservedBatch.length == 1)
+                ItemReservations.release(reservedBatch[0]);
+        }
+        return reservedBatches;
+    }
+
+    //first fit decreasing - the heaviest items get their batches first, the light ones fill the gaps
+    private static void packByWeight(List<InventoryMetaItem> group, float maxWeight, List<long[]> batches) {
+        group.sort(Comparator.comparingDouble(InventoryMetaItem::getWeight).reversed());
+        List<List<InventoryMetaItem>> bins = new ArrayList<>();
+        List<Float> binWeights = new ArrayList<>();
+        for (InventoryMetaItem item : group) {
+            int binIndex = -1;
+            for (int i = 0; i < bins.size(); i++) {
+                if (bins.get(i).size() < MAX_ITEMS_PER_ACTION && binWeights.get(i) + item.getWeight() <= maxWeight) {
+                    binIndex = i;
+                    break;
+                }
+            }
+            if (binIndex == -1) {
+                bins.add(new ArrayList<>());
+                binWeights.add(0f);
+                binIndex = bins.size() - 1;
+            }
+            bins.get(binIndex).add(item);
+            binWeights.set(binIndex, binWeights.get(binIndex) + item.getWeight());
+        }
+        for (List<InventoryMetaItem> bin : bins)
+            if (bin.size() > 1)
+                batches.add(Utils.getItemIds(bin));
+    }
+
+    //spread items evenly so the last batch doesn't end up with a single item
+    private static void packByCount(List<InventoryMetaItem> group, List<long[]> batches) {
+        int batchCount = (group.size() + MAX_ITEMS_PER_ACTION - 1) / MAX_ITEMS_PER_ACTION;
+        int from = 0;
+        for (int i = 0; i < batchCount; i++) {
+            int to = from + (group.size() - from) / (batchCount - i);
+            if (to - from > 1)
+                batches.add(Utils.getItemIds(group.subList(from, to)));
+            from = to;
+        }
+    }
+}
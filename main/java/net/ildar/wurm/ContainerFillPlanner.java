@@ -0,0 +1,245 @@
+package net.ildar.wurm;
+
+import com.wurmonline.client.game.inventory.InventoryMetaItem;
+import com.wurmonline.client.renderer.gui.InventoryListComponent;
+
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+/**
+ * Distributes items between containers with limited capacity.
+ * Fill levels are cached per container id and updated with every planned move,
+ * containers are recounted only when the cached value gets old or was invalidated.
+ * The planned moves stay pending until the item leaves its inventory, the pending items are not planned again
+ * and are added to the recounted fill levels.
+ */
+public class ContainerFillPlanner {
+    private static final long REFRESH_TIMEOUT = 60000;
+    //the move that didn't complete in this time is considered failed
+    private static final long PENDING_MOVE_TIMEOUT = 10000;
+
+    private final ToIntFunction<InventoryMetaItem> fillCounter;
+    private final Map<Long, ContainerState> containerStates = new HashMap<>();
+    //item id -> planned move
+    private final Map<Long, PendingMove> pendingMoves = new HashMap<>();
+    private final InventoryTracker.Listener removalListener = this::inventoryChanged;
+    private boolean listening;
+    private int capacity;
+
+    /**
+     * @param capacity    the default capacity of a container
+     * @param fillCounter counts the current fill level of a container
+     */
+    public ContainerFillPlanner(int capacity, ToIntFunction<InventoryMetaItem> fillCounter) {
+        this.capacity = capacity;
+        this.fillCounter = fillCounter;
+    }
+
+    /**
+     * Fill level of an ordinary container - the number of items inside
+     */
+    public static int countChildren(InventoryMetaItem container) {
+        List<InventoryMetaItem> children = container.getChildren();
+        return children == null ? 0 : children.size();
+    }
+
+    /**
+     * Fill level of a bulk container - the sum of item counts shown like "123x" in the names of its contents
+     */
+    public static int countBulkItems(InventoryMetaItem container) {
+        List<InventoryMetaItem> children = container.getChildren();
+        int itemsCount = 0;
+        if (children == null)
+            return 0;
+        for (InventoryMetaItem contentItem : children) {
+            String customName = contentItem.getCustomName();
+            if (customName != null) {
+                try {
+                    itemsCount += Integer.parseInt(customName.substring(0, customName.length() - 1));
+                } catch (NumberFormatException | StringIndexOutOfBoundsException ignored) {
+                }
+            }
+        }
+        return itemsCount;
+    }
+
+    /**
+     * Splits the items between containers in provided order and accounts them in cached fill levels
+     *
+     * @return container id -> ids of items to move into it. Items that didn't fit anywhere are not included
+     */
+    public synchronized Map<Long, long[]> plan(List<InventoryMetaItem> containers, long[] itemIds) {
+        Map<Long, long[]> moves = new LinkedHashMap<>();
+        if (containers == null || itemIds == null)
+            return moves;
+        expirePendingMoves();
+        itemIds = skipPending(itemIds);
+        long expirationTime = System.currentTimeMillis() + PENDING_MOVE_TIMEOUT;
+        int placed = 0;
+        for (InventoryMetaItem container : containers) {
+            if (placed >= itemIds.length)
+                break;
+            ContainerState state = getState(container);
+            int quantity = Math.min(state.capacity - state.fill, itemIds.length - placed);
+            if (quantity <= 0)
+                continue;
+            long[] containerItemIds = Arrays.copyOfRange(itemIds, placed, placed + quantity);
+            moves.put(container.getId(), containerItemIds);
+            for (long itemId : containerItemIds)
+                pendingMoves.put(itemId, new PendingMove(container.getId(), expirationTime));
+            state.fill += quantity;
+            placed += quantity;
+        }
+        updateListener();
+        return moves;
+    }
+
+    /**
+     * Plans and sends the moves. The items reserved by other threads in {@link ItemReservations} are skipped
+     *
+     * @return the number of items that didn't fit into containers
+     */
+    public int move(List<InventoryMetaItem> containers, long[] itemIds) {
+        itemIds = ItemReservations.reserve(itemIds, ItemReservations.DEFAULT_TTL);
+        synchronized (this) {
+            expirePendingMoves();
+            itemIds = skipPending(itemIds);
+        }
+        Map<Long, long[]> moves = plan(containers, itemIds);
+        Set<Long> plannedIds = new HashSet<>();
+        for (Map.Entry<Long, long[]> move : moves.entrySet()) {
+            Mod.hud.getWorld().getServerConnection().sendMoveSomeItems(move.getKey(), move.getValue());
+            for (long itemId : move.getValue())
+                plannedIds.add(itemId);
+        }
+        //the items that didn't fit stay available to other bots
+        for (long itemId : itemIds)
+            if (!plannedIds.contains(itemId))
+                ItemReservations.release(itemId);
+        return itemIds.length - plannedIds.size();
+    }
+
+    public synchronized int getFreeSpace(InventoryMetaItem container) {
+        ContainerState state = getState(container);
+        return Math.max(0, state.capacity - state.fill);
+    }
+
+    /**
+     * The container is considered full until the next recount
+     */
+    public synchronized void markFull(long containerId) {
+        ContainerState state = containerStates.get(containerId);
+        if (state != null)
+            state.fill = state.capacity;
+    }
+
+    public synchronized void setCapacity(int capacity) {
+        this.capacity = capacity;
+        for (ContainerState state : containerStates.values())
+            if (!state.customCapacity)
+                state.capacity = capacity;
+    }
+
+    public synchronized void setCapacity(long containerId, int capacity) {
+        ContainerState state = containerStates.get(containerId);
+        if (state == null) {
+            state = new ContainerState();
+            containerStates.put(containerId, state);
+        }
+        state.capacity = capacity;
+        state.customCapacity = true;
+    }
+
+    public synchronized void invalidate(long containerId) {
+        ContainerState state = containerStates.get(containerId);
+        if (state != null)
+            state.refreshTime = 0;
+    }
+
+    public synchronized void invalidateAll() {
+        containerStates.clear();
+    }
+
+    private void inventoryChanged(InventoryListComponent component, InventoryMetaItem item, InventoryTracker.ChangeType changeType) {
+        if (changeType != InventoryTracker.ChangeType.REMOVED)
+            return;
+        synchronized (this) {
+            //the item is in the container now and stays in its cached fill level
+            if (pendingMoves.remove(item.getId()) != null)
+                updateListener();
+        }
+    }
+
+    private void expirePendingMoves() {
+        long now = System.currentTimeMillis();
+        Iterator<PendingMove> iterator = pendingMoves.values().iterator();
+        while (iterator.hasNext()) {
+            PendingMove pendingMove = iterator.next();
+            if (pendingMove.expirationTime > now)
+                continue;
+            iterator.remove();
+            ContainerState state = containerStates.get(pendingMove.containerId);
+            if (state != null)
+                state.fill = Math.max(0, state.fill - 1);
+        }
+        updateListener();
+    }
+
+    //the listener is registered only while there are pending moves, so the planners of stopped bots are not kept
+    private void updateListener() {
+        if (listening == !pendingMoves.isEmpty())
+            return;
+        listening = !listening;
+        if (listening)
+            InventoryTracker.addListener(removalListener);
+        else
+            InventoryTracker.removeListener(removalListener);
+    }
+
+    private long[] skipPending(long[] itemIds) {
+        if (pendingMoves.isEmpty())
+            return itemIds;
+        return Arrays.stream(itemIds).filter(itemId -> !pendingMoves.containsKey(itemId)).toArray();
+    }
+
+    private int countPending(long containerId) {
+        int count = 0;
+        for (PendingMove pendingMove : pendingMoves.values())
+            if (pendingMove.containerId == containerId)
+                count++;
+        return count;
+    }
+
+    private ContainerState getState(InventoryMetaItem container) {
+        ContainerState state = containerStates.get(container.getId());
+        if (state == null) {
+            state = new ContainerState();
+            state.capacity = capacity;
+            containerStates.put(container.getId(), state);
+        }
+        if (Math.abs(System.currentTimeMillis() - state.refreshTime) > REFRESH_TIMEOUT) {
+            state.fill = fillCounter.applyAsInt(container) + countPending(container.getId());
+            state.refreshTime = System.currentTimeMillis();
+            if (!state.customCapacity)
+                state.capacity = capacity;
+        }
+        return state;
+    }
+
+    private static class PendingMove {
+        final long containerId;
+        final long expirationTime;
+
+        PendingMove(long containerId, long expirationTime) {
+            this.containerId = containerId;
+            this.expirationTime = expirationTime;
+        }
+    }
+
+    private static class ContainerState {
+        int capacity;
+        int fill;
+        long refreshTime;
+        boolean customCapacity;
+    }
+}
@@ -0,0 +1,98 @@
+package net.ildar.wurm;
+
+import com.wurmonline.shared.constants.PlayerAction;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tracks container windows opened on behalf of a bot.
+ * The amount of tracked windows is limited, the least recently used windows are closed first.
+ */
+public class ContainerWindowManager {
+    private static final long OPEN_RETRY_TIMEOUT = 5000;
+
+    //container id -> time of the last OPEN request, in access order
+    private final Map<Long, Long> trackedWindows = new LinkedHashMap<>(16, 0.75f, true);
+    private int capacity;
+
+    public ContainerWindowManager(int capacity) {
+        setCapacity(capacity);
+    }
+
+    /**
+     * Returns the window of the container if it is opened already.
+     * Otherwise sends the OPEN request(unless one is already in flight) and returns null.
+     * A window that was closed by eviction or by the user will be reopened on next call.
+     */
+    public synchronized WindowRegistry.Entry open(long containerId) {
+        WindowRegistry.Entry entry = WindowRegistry.get(containerId);
+        Long lastRequest = trackedWindows.get(containerId);
+        long now = System.currentTimeMillis();
+        if (entry != null) {
+            //the windows kept over the capacity while their OPEN was in flight can be closed now
+            evict(now);
+            return entry;
+        }
+        if (lastRequest == null || now - lastRequest > OPEN_RETRY_TIMEOUT) {
+            trackedWindows.put(containerId, now);
+            Mod.hud.sendAction(PlayerAction.OPEN, containerId);
+            evict(now);
+        }
+        return null;
+    }
+
+    /**
+     * @return true if the container was opened through this manager and wasn't evicted since
+     */
+    public synchronized boolean isTracked(long containerId) {
+        return trackedWindows.containsKey(containerId);
+    }
+
+    /**
+     * Marks the window as recently used
+     */
+    public synchronized void touch(long containerId) {
+        trackedWindows.get(containerId);
+    }
+
+    /**
+     * Closes the window of the container and stops tracking it
+     */
+    public synchronized void close(long containerId) {
+        trackedWindows.remove(containerId);
+        if (WindowRegistry.get(containerId) != null)
+            Mod.hud.sendAction(PlayerAction.CLOSE, containerId);
+    }
+
+    public synchronized void closeAll() {
+        for (Long containerId : new ArrayList<>(trackedWindows.keySet()))
+            close(containerId);
+    }
+
+    public synchronized void setCapacity(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        evict(System.currentTimeMillis());
+    }
+
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    //a window whose OPEN is still in flight can't be closed yet, it is evicted after it arrives or the request expires
+    private void evict(long now) {
+        Iterator<Map.Entry<Long, Long>> iter = trackedWindows.entrySet().iterator();
+        while (trackedWindows.size() > capacity && iter.hasNext()) {
+            Map.Entry<Long, Long> trackedWindow = iter.next();
+            long containerId = trackedWindow.getKey();
+            boolean opened = WindowRegistry.get(containerId) != null;
+            if (!opened && now - trackedWindow.getValue() <= OPEN_RETRY_TIMEOUT)
+                continue;
+            iter.remove();
+            if (opened)
+                Mod.hud.sendAction(PlayerAction.CLOSE, containerId);
+        }
+    }
+}
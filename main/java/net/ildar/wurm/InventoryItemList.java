@@ -0,0 +1,153 @@
+package net.ildar.wurm;
+
+import com.wurmonline.client.game.inventory.InventoryMetaItem;
+import com.wurmonline.client.renderer.gui.InventoryListComponent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Items of an inventory component accepted by the filter.
+ * The inventory is scanned once, after that the list is kept up to date by {@link InventoryTracker} events.
+ * Register the list with {@link InventoryTracker#addListener(InventoryTracker.Listener)} before use.
+ */
+public class InventoryItemList implements InventoryTracker.Listener {
+    private final InventoryListComponent component;
+    private final Predicate<InventoryMetaItem> filter;
+    private final Comparator<InventoryMetaItem> comparator;
+    private final boolean inventoryOnly;
+    private final List<InventoryMetaItem> items = new ArrayList<>();
+    //ids of the "inventory" node and of all items under it, used when the list is limited to that node
+    private final Set<Long> inventoryIds = new HashSet<>();
+    private List<InventoryMetaItem> itemsView;
+    private boolean loaded;
+    private int version;
+
+    /**
+     * @param comparator the order of the items. Null keeps the order of the inventory, new items are added to the end
+     */
+    public InventoryItemList(InventoryListComponent component, Predicate<InventoryMetaItem> filter, Comparator<InventoryMetaItem> comparator) {
+        this(component, filter, comparator, false);
+    }
+
+    private InventoryItemList(InventoryListComponent component, Predicate<InventoryMetaItem> filter,
+                              Comparator<InventoryMetaItem> comparator, boolean inventoryOnly) {
+        this.component = component;
+        this.filter = filter;
+        this.comparator = comparator;
+        this.inventoryOnly = inventoryOnly;
+    }
+
+    /**
+     * @return the list of items under the "inventory" node of player's inventory,
+     * the body and the equipped items are left out like in {@link Utils#getSelectedItems(boolean, boolean)}
+     */
+    public static InventoryItemList ofPlayerInventory(Predicate<InventoryMetaItem> filter, Comparator<InventoryMetaItem> comparator) {
+        return new InventoryItemList(Mod.hud.getInventoryWindow().getInventoryListComponent(), filter, comparator, true);
+    }
+
+    /**
+     * @return unmodifiable list of items. The same instance is returned until the contents change
+     */
+    public synchronized List<InventoryMetaItem> getItems() {
+        if (!loaded)
+            load();
+        if (itemsView == null)
+            itemsView = Collections.unmodifiableList(new ArrayList<>(items));
+        return itemsView;
+    }
+
+    /**
+     * @return the number that changes every time the contents of the list change
+     */
+    public synchronized int getVersion() {
+        return version;
+    }
+
+    /**
+     * The inventory will be scanned again on the next access
+     */
+    public synchronized void reload() {
+        loaded = false;
+    }
+
+    @Override
+    public synchronized void inventoryChanged(InventoryListComponent component, InventoryMetaItem item, InventoryTracker.ChangeType changeType) {
+        if (component != this.component || !loaded)
+            return;
+        int index = indexOf(item.getId());
+        boolean accepted = changeType != InventoryTracker.ChangeType.REMOVED && filter.test(item);
+        if (inventoryOnly) {
+            if (changeType == InventoryTracker.ChangeType.REMOVED)
+                inventoryIds.remove(item.getId());
+            else if (inventoryIds.contains(item.getParentId()))
+                inventoryIds.add(item.getId());
+            else if (accepted && inventoryIds.isEmpty()) {
+                //the inventory was empty on the last scan, so its id is unknown yet
+                loaded = false;
+                changed();
+                return;
+            } else {
+                inventoryIds.remove(item.getId());
+                accepted = false;
+            }
+        }
+        if (index == -1 && !accepted)
+            return;
+        if (index != -1 && accepted && comparator == null)
+            items.set(index, item);
+        else {
+            if (index != -1)
+                items.remove(index);
+            if (accepted)
+                insert(item);
+        }
+        changed();
+    }
+
+    private void load() {
+        items.clear();
+        inventoryIds.clear();
+        List<InventoryMetaItem> scannedItems = inventoryOnly
+                ? Utils.getSelectedItems(true, true)
+                : Utils.getSelectedItems(component, true, true);
+        for (InventoryMetaItem item : scannedItems) {
+            if (inventoryOnly) {
+                inventoryIds.add(item.getId());
+                inventoryIds.add(item.getParentId());
+            }
+            if (filter.test(item))
+                items.add(item);
+        }
+        if (comparator != null)
+            items.sort(comparator);
+        loaded = true;
+        changed();
+    }
+
+    private void insert(InventoryMetaItem item) {
+        if (comparator == null) {
+            items.add(item);
+            return;
+        }
+        int position = Collections.binarySearch(items, item, comparator);
+        items.add(position < 0 ? -position - 1 : position, item);
+    }
+
+    private int indexOf(long itemId) {
+        for (int i = 0; i < items.size(); i++)
+            if (items.get(i).getId() == itemId)
+                return i;
+        return -1;
+    }
+
+    private void changed() {
+        version++;
+        itemsView = null;
+    }
+}
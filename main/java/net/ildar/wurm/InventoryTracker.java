@@ -0,0 +1,58 @@
+package net.ildar.wurm;
+
+import com.wurmonline.client.game.inventory.InventoryMetaItem;
+import com.wurmonline.client.renderer.gui.InventoryListComponent;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Notifies about item changes in inventory components.
+ * Called from the game thread through the code injected into {@link InventoryListComponent} in {@link Mod#preInit()},
+ * so the listeners must return quickly.
+ */
+public class InventoryTracker {
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public static void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public static void onItemAdded(Object component, InventoryMetaItem item) {
+        notifyListeners(component, item, ChangeType.ADDED);
+    }
+
+    public static void onItemUpdated(Object component, InventoryMetaItem item) {
+        notifyListeners(component, item, ChangeType.UPDATED);
+    }
+
+    public static void onItemRemoved(Object component, InventoryMetaItem item) {
+        notifyListeners(component, item, ChangeType.REMOVED);
+    }
+
+    private static void notifyListeners(Object component, InventoryMetaItem item, ChangeType changeType) {
+        if (item == null || listeners.isEmpty())
+            return;
+        for (Listener listener : listeners) {
+            try {
+                listener.inventoryChanged((InventoryListComponent) component, item, changeType);
+            } catch (Exception e) {
+                Utils.consolePrint("Error in inventory listener " + e.getMessage());
+            }
+        }
+    }
+
+    public enum ChangeType {
+        ADDED,
+        UPDATED,
+        REMOVED
+    }
+
+    public interface Listener {
+        void inventoryChanged(InventoryListComponent component, InventoryMetaItem item, ChangeType changeType);
+    }
+}
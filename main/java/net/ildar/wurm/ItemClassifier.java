@@ -0,0 +1,92 @@
+package net.ildar.wurm;
+
+import com.wurmonline.client.game.inventory.InventoryMetaItem;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Classifies the items by their base names.
+ * The categories of a base name are computed once and cached as a bitmask,
+ * so the classification of an item is a single map lookup.
+ */
+public class ItemClassifier {
+    private static final int CACHE_SIZE = 4096;
+    private static final Set<String> FORAGABLE_NAMES = new HashSet<>(Arrays.asList(
+            "oregano", "rosemary", "lingonberry", "pumpkin",
+            "thyme", "tomato", "lovage", "fennel plant",
+            "acorn", "cumin", "wemp plants", "corn",
+            "potato", "belladonna", "mixed grass", "cotton",
+            "cabbage", "ginger", "raspberries", "cocoa bean",
+            "sage", "blueberry", "carrot", "garlic",
+            "rye", "sassafras", "strawberries", "egg",
+            "nettles", "pea pod", "parsley", "wheat",
+            "barley", "onion", "turmeric", "basil",
+            "mint", "sugar beet", "rice", "cucumber",
+            "lettuce", "branch", "woad", "oat",
+            "paprika", "nutmeg", "rock"));
+    private static final List<String> FORAGABLE_KEYWORDS = Arrays.asList(
+            "fresh", "seedling", "sprout", "mushroom", "bouquet");
+
+    private static final Map<String, Integer> cache = new LinkedHashMap<String, Integer>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    public static boolean is(InventoryMetaItem item, Category category) {
+        return item != null && is(item.getBaseName(), category);
+    }
+
+    public static boolean is(String baseName, Category category) {
+        return (classify(baseName) & category.mask) != 0;
+    }
+
+    /**
+     * @return the items of provided category in the same order
+     */
+    public static List<InventoryMetaItem> filter(List<InventoryMetaItem> items, Category category) {
+        List<InventoryMetaItem> result = new ArrayList<>();
+        for (InventoryMetaItem item : items)
+            if (is(item, category))
+                result.add(item);
+        return result;
+    }
+
+    /**
+     * @return the bitmask of categories of the base name. See {@link Category#mask}
+     */
+    public static int classify(String baseName) {
+        if (baseName == null)
+            return 0;
+        synchronized (cache) {
+            Integer mask = cache.get(baseName);
+            if (mask == null) {
+                mask = 0;
+                for (Category category : Category.values())
+                    if (category.predicate.test(baseName))
+                        mask |= category.mask;
+                cache.put(baseName, mask);
+            }
+            return mask;
+        }
+    }
+
+    public enum Category {
+        FORAGABLE(name -> FORAGABLE_NAMES.contains(name) || FORAGABLE_KEYWORDS.stream().anyMatch(name::contains)),
+        ROCK(name -> name.contains("rock")),
+        LUMP(name -> name.contains("lump")),
+        ORE(name -> name.endsWith(" ore") || name.equals("ore")),
+        SHARDS(name -> name.contains("shards")),
+        SPROUT(name -> name.contains("sprout")),
+        KINDLING(name -> name.contains("kindling"));
+
+        public final int mask = 1 << ordinal();
+        private final Predicate<String> predicate;
+
+        Category(Predicate<String> predicate) {
+            this.predicate = predicate;
+        }
+    }
+}
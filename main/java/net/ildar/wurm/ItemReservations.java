@@ -0,0 +1,119 @@
+package net.ildar.wurm;
+
+import com.wurmonline.client.game.inventory.InventoryMetaItem;
+
+import java.util.*;
+
+/**
+ * Leases on item ids, so the bots don't send moves or combines of the same items at once.
+ * A bot reserves the items before it acts on them and releases them when it is done or the lease expires.
+ * The owner of a lease is the thread that took it, so the leases of a bot are released when the bot stops.
+ * The lease of an item that left its inventory is dropped, the action on the item is done.
+ */
+public class ItemReservations {
+    /**
+     * The lease for the actions that end right after they are sent, like moves and combines
+     */
+    public static final long DEFAULT_TTL = 5000;
+
+    private static final Map<Long, Lease> leases = new HashMap<>();
+
+    static {
+        InventoryTracker.addListener((component, item, changeType) -> {
+            if (changeType != InventoryTracker.ChangeType.REMOVED)
+                return;
+            synchronized (leases) {
+                leases.remove(item.getId());
+            }
+        });
+    }
+
+    /**
+     * @return true if the item is reserved by the current thread now
+     */
+    public static boolean reserve(long itemId, long ttl) {
+        synchronized (leases) {
+            Lease lease = leases.get(itemId);
+            long now = System.currentTimeMillis();
+            if (lease != null && lease.owner != Thread.currentThread() && lease.expirationTime > now)
+                return false;
+            leases.put(itemId, new Lease(Thread.currentThread(), now + ttl));
+            return true;
+        }
+    }
+
+    /**
+     * Reserves the items that aren't reserved by other threads
+     *
+     * @return the reserved items in the same order
+     */
+    public static List<InventoryMetaItem> reserve(Collection<InventoryMetaItem> items, long ttl) {
+        List<InventoryMetaItem> reservedItems = new ArrayList<>();
+        if (items == null)
+            return reservedItems;
+        synchronized (leases) {
+            removeExpired();
+            for (InventoryMetaItem item : items)
+                if (reserve(item.getId(), ttl))
+                    reservedItems.add(item);
+        }
+        return reservedItems;
+    }
+
+    /**
+     * @return the ids of the items that were reserved, in the same order
+     */
+    public static long[] reserve(long[] itemIds, long ttl) {
+        if (itemIds == null)
+            return new long[0];
+        synchronized (leases) {
+            removeExpired();
+            return Arrays.stream(itemIds).filter(itemId -> reserve(itemId, ttl)).toArray();
+        }
+    }
+
+    /**
+     * @return true if the item is reserved by another thread
+     */
+    public static boolean isReserved(long itemId) {
+        synchronized (leases) {
+            Lease lease = leases.get(itemId);
+            return lease != null && lease.owner != Thread.currentThread() && lease.expirationTime > System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Releases the item reserved by the current thread, e.g. when the action on it has failed
+     */
+    public static void release(long itemId) {
+        synchronized (leases) {
+            Lease lease = leases.get(itemId);
+            if (lease != null && lease.owner == Thread.currentThread())
+                leases.remove(itemId);
+        }
+    }
+
+    /**
+     * Releases all items reserved by provided thread
+     */
+    public static void releaseAll(Thread owner) {
+        synchronized (leases) {
+            leases.values().removeIf(lease -> lease.owner == owner);
+        }
+    }
+
+    private static void removeExpired() {
+        long now = System.currentTimeMillis();
+        leases.values().removeIf(lease -> lease.expirationTime <= now);
+    }
+
+    private static class Lease {
+        final Thread owner;
+        final long expirationTime;
+
+        Lease(Thread owner, long expirationTime) {
+            this.owner = owner;
+            this.expirationTime = expirationTime;
+        }
+    }
+}
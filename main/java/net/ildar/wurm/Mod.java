@@ -13,7 +13,6 @@ import javassist.ClassPool;
 import javassist.CtClass;
 import javassist.CtMethod;
 import javassist.CtNewMethod;
-import net.ildar.wurm.bot.BulkItemGetterBot;
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 import org.gotti.wurmunlimited.modloader.classhooks.HookManager;
 import org.gotti.wurmunlimited.modloader.interfaces.Configurable;
@@ -22,7 +21,6 @@ import org.gotti.wurmunlimited.modloader.interfaces.PreInitable;
 import org.gotti.wurmunlimited.modloader.interfaces.WurmClientMod;
 
 import java.io.FileInputStream;
-import java.lang.reflect.Method;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -31,7 +29,6 @@ public class Mod implements WurmClientMod, Initable, Configurable, PreInitable {
     public static HeadsUpDisplay hud;
     private static Mod instance;
     private final long BLESS_TIMEOUT = 1800000;
-    public List<WurmComponent> components;
     private final Logger logger;
     private final Map<ConsoleCommand, ConsoleCommandHandler> consoleCommandHandlers;
     private long lastBless = 0L;
@@ -54,6 +51,7 @@ public class Mod implements WurmClientMod, Initable, Configurable, PreInitable {
         consoleCommandHandlers.put(ConsoleCommand.mtcenter, input -> Utils.moveToCenter());
         consoleCommandHandlers.put(ConsoleCommand.mtcorner, input -> Utils.moveToNearestCorner());
         consoleCommandHandlers.put(ConsoleCommand.stabilizelook, input -> Utils.stabilizeLook());
+        consoleCommandHandlers.put(ConsoleCommand.script, ScriptEngine::handleInput);
         Mod.instance = this;
     }
 
@@ -280,7 +278,12 @@ public class Mod implements WurmClientMod, Initable, Configurable, PreInitable {
             Utils.consolePrint("No selected items!");
             return;
         }
-        hud.getWorld().getServerConnection().sendAction(itemsToCombine[0], itemsToCombine, PlayerAction.COMBINE);
+        //the server combines a limited amount of items per action
+        for (int from = 0; from < itemsToCombine.length; from += CombinePlanner.MAX_ITEMS_PER_ACTION) {
+            long[] batch = Arrays.copyOfRange(itemsToCombine, from,
+                    Math.min(from + CombinePlanner.MAX_ITEMS_PER_ACTION, itemsToCombine.length));
+            hud.getWorld().getServerConnection().sendAction(batch[0], batch, PlayerAction.COMBINE);
+        }
     }
 
     private void handleSleepCommand(String[] input) {
@@ -349,7 +352,7 @@ public class Mod implements WurmClientMod, Initable, Configurable, PreInitable {
             return;
         }
         List<InventoryMetaItem> itemsToMove = new ArrayList<>();
-        float favor = Mod.hud.getWorld().getPlayer().getSkillSet().getSkillValue("favor");
+        float favor = WorldSnapshot.get().getSkillValue("favor");
         for (InventoryMetaItem item : items) {
             if (favor >= favorLevel) break;
             itemsToMove.add(item);
@@ -359,35 +362,18 @@ public class Mod implements WurmClientMod, Initable, Configurable, PreInitable {
             Utils.consolePrint("No items to move");
             return;
         }
-        if (components == null) {
-            Utils.consolePrint("Components list is empty!");
+        WindowRegistry.Entry altar = WindowRegistry.findFirst("altar of");
+        if (altar == null) {
+            Utils.consolePrint("Didn't find an opened altar");
             return;
         }
-        for (WurmComponent component : components) {
-            if (component instanceof ItemListWindow) {
-                try {
-                    ilc = ReflectionUtil.getPrivateField(component,
-                            ReflectionUtil.getField(component.getClass(), "component"));
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    return;
-                }
-                InventoryMetaItem rootItem = Utils.getRootItem(ilc);
-                if (rootItem == null) {
-                    Utils.consolePrint("Internal error on moving items");
-                    return;
-                }
-                if (!rootItem.getBaseName().contains("altar of")) continue;
-                if (rootItem.getChildren() != null && rootItem.getChildren().size() > 0) {
-                    Utils.showOnScreenMessage("An altar is not empty!");
-                    return;
-                }
-                Mod.hud.getWorld().getServerConnection().sendMoveSomeItems(rootItem.getId(), Utils.getItemIds(itemsToMove));
-                Mod.hud.sendAction(PlayerAction.SACRIFICE, rootItem.getId());
-                return;
-            }
+        InventoryMetaItem rootItem = altar.getRootItem();
+        if (rootItem.getChildren() != null && rootItem.getChildren().size() > 0) {
+            Utils.showOnScreenMessage("An altar is not empty!");
+            return;
         }
-        Utils.consolePrint("Didn't find an opened altar");
+        Mod.hud.getWorld().getServerConnection().sendMoveSomeItems(rootItem.getId(), Utils.getItemIds(itemsToMove));
+        Mod.hud.sendAction(PlayerAction.SACRIFICE, rootItem.getId());
     }
 
     @Override
@@ -442,6 +428,16 @@ public class Mod implements WurmClientMod, Initable, Configurable, PreInitable {
             logger.log(Level.SEVERE, "Error loading mod", e);
             logger.log(Level.SEVERE, e.toString());
         }
+        try {
+            final ClassPool classPool = HookManager.getInstance().getClassPool();
+            final CtClass ctInventoryListComponent = classPool.getCtClass("com.wurmonline.client.renderer.gui.InventoryListComponent");
+            final String itemDescriptor = "(Lcom/wurmonline/client/game/inventory/InventoryMetaItem;)V";
+            ctInventoryListComponent.getMethod("addInventoryItem", itemDescriptor).insertAfter("net.ildar.wurm.InventoryTracker.onItemAdded(this, $1);");
+            ctInventoryListComponent.getMethod("updateInventoryItem", itemDescriptor).insertAfter("net.ildar.wurm.InventoryTracker.onItemUpdated(this, $1);");
+            ctInventoryListComponent.getMethod("removeInventoryItem", itemDescriptor).insertAfter("net.ildar.wurm.InventoryTracker.onItemRemoved(this, $1);");
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error on tracking inventory changes", e);
+        }
     }
 
     public void init() {
@@ -451,30 +447,26 @@ public class Mod implements WurmClientMod, Initable, Configurable, PreInitable {
                 Mod.hud = (HeadsUpDisplay) proxy;
                 return null;
             });
+            HookManager.getInstance().registerHook("com.wurmonline.client.renderer.gui.HeadsUpDisplay", "gameTick", "()V", () -> (proxy, method, args) -> {
+                method.invoke(proxy, args);
+                WorldSnapshot.capture();
+                //the windows may be closed without any hooked call
+                WindowRegistry.update((HeadsUpDisplay) proxy);
+                ScriptEngine.tick();
+                return null;
+            });
 
             HookManager.getInstance().registerHook("com.wurmonline.client.renderer.gui.HeadsUpDisplay", "addComponent", "(Lcom/wurmonline/client/renderer/gui/WurmComponent;)Z", () -> (proxy, method, args) -> {
                 WurmComponent wc = (WurmComponent) args[0];
-                boolean notadd = false;
-                if (BulkItemGetterBot.closeBMLWindow && wc instanceof BmlWindowComponent) {
-                    String title = ReflectionUtil.getPrivateField(wc, ReflectionUtil.getField(wc.getClass(), "title"));
-                    if (title.equals("Removing items")) {
-                        Method clickButton = ReflectionUtil.getMethod(wc.getClass(), "processButtonPressed");
-                        clickButton.setAccessible(true);
-                        clickButton.invoke(wc, "submit");
-                        notadd = true;
-                        BulkItemGetterBot.closeBMLWindow = false;
-                    }
-                }
-                if (!notadd) {
-                    Object o = method.invoke(proxy, args);
-                    components = new ArrayList<>(ReflectionUtil.getPrivateField(proxy, ReflectionUtil.getField(proxy.getClass(), "components")));
-                    return o;
-                }
-                return (Object) true;
+                if (BulkTransferTracker.onWindowAdded(wc))
+                    return (Object) true;
+                Object o = method.invoke(proxy, args);
+                WindowRegistry.update((HeadsUpDisplay) proxy);
+                return o;
             });
             HookManager.getInstance().registerHook("com.wurmonline.client.renderer.gui.HeadsUpDisplay", "setActiveWindow", "(Lcom/wurmonline/client/renderer/gui/WurmComponent;)V", () -> (proxy, method, args) -> {
                 method.invoke(proxy, args);
-                components = new ArrayList<>(ReflectionUtil.getPrivateField(proxy, ReflectionUtil.getField(proxy.getClass(), "components")));
+                WindowRegistry.update((HeadsUpDisplay) proxy);
                 return null;
             });
 
@@ -541,7 +533,9 @@ public class Mod implements WurmClientMod, Initable, Configurable, PreInitable {
         actionlist("", "Show the list of available actions to use with \"action\" key"),
         action("abbreviation", "Use the appropritate tool from player's inventory with provided action abbreviation on the hovered object. " +
                 "See the list of available actions with \"" + actionlist.name() + "\" command"),
-        getid("", "Copy the id of hovered object to the clipboard");
+        getid("", "Copy the id of hovered object to the clipboard"),
+        script("{run name|stop [name]|list}", "Runs the console commands from the file \"scripts/name.txt\" in the background. " +
+                "Use \"wait\" in the scripts instead of \"" + sleep.name() + "\", it doesn't freeze the game.");
 
         public String description;
         private final String usage;
@@ -0,0 +1,151 @@
+package net.ildar.wurm;
+
+import com.wurmonline.client.game.inventory.InventoryMetaItem;
+import com.wurmonline.client.renderer.gui.InventoryListComponent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Production lines made of running bots. A link connects a producer bot to a consumer bot by a category of items:
+ * the items of that category appearing in the player's inventory are the input of the consumer.
+ * The consumer without input is held until new input comes, and the producer is held while the consumer can't put
+ * its output anywhere. The bots report their state with {@link #signal(Class, Signal)}.
+ * The holds are not pauses, the queued actions of the held bot are not stopped.
+ */
+public class Pipeline {
+    //the consumer without input looks for it on its own after this time
+    private static final long IDLE_HOLD = 30000;
+    //the producer is let go after this time to check if the consumer has room again
+    private static final long FULL_HOLD = 60000;
+    //the input that came this recently could be missed by the consumer that reports no input
+    private static final long INPUT_GRACE = 2000;
+
+    private static final List<Link> links = new CopyOnWriteArrayList<>();
+    private static final Set<BotProxy> heldBots = ConcurrentHashMap.newKeySet();
+    private static final InventoryTracker.Listener inputListener = Pipeline::inventoryChanged;
+
+    public static void link(BotProxy producer, ItemClassifier.Category category, BotProxy consumer) {
+        if (links.isEmpty())
+            InventoryTracker.addListener(inputListener);
+        links.add(new Link(producer, category, consumer));
+    }
+
+    /**
+     * Removes all links and lets the held bots go
+     */
+    public static void clear() {
+        links.clear();
+        InventoryTracker.removeListener(inputListener);
+        for (BotProxy bot : heldBots)
+            unhold(bot);
+    }
+
+    public static List<String> describe() {
+        List<String> result = new ArrayList<>();
+        for (Link link : links)
+            result.add(link.producer.getSimpleName() + " -" + link.category.name().toLowerCase() + "-> " + link.consumer.getSimpleName()
+                    + (link.blocked ? " (full)" : ""));
+        return result;
+    }
+
+    /**
+     * Called by the bots of the pipeline to report their state
+     */
+    public static void signal(Class<? extends Thread> botClass, Signal signal) {
+        long now = System.currentTimeMillis();
+        switch (signal) {
+            case NO_INPUT:
+                BotProxy consumer = null;
+                for (Link link : links) {
+                    if (!link.consumer.isFor(botClass))
+                        continue;
+                    if (Math.abs(now - link.lastInput) <= INPUT_GRACE)
+                        return;
+                    consumer = link.consumer;
+                }
+                if (consumer != null)
+                    hold(consumer, IDLE_HOLD);
+                break;
+            case OUTPUT_FULL:
+                for (Link link : links) {
+                    if (!link.consumer.isFor(botClass))
+                        continue;
+                    if (!link.blocked)
+                        Utils.consolePrint(link.producer.getSimpleName() + " is held until "
+                                + link.consumer.getSimpleName() + " has room for the output");
+                    link.blocked = true;
+                    hold(link.producer, FULL_HOLD);
+                }
+                break;
+            case PROGRESS:
+                for (Link link : links) {
+                    if (!link.consumer.isFor(botClass) || !link.blocked)
+                        continue;
+                    link.blocked = false;
+                    if (links.stream().noneMatch(other -> other.blocked && other.producer == link.producer))
+                        unhold(link.producer);
+                }
+                break;
+        }
+    }
+
+    private static void inventoryChanged(InventoryListComponent component, InventoryMetaItem item, InventoryTracker.ChangeType changeType) {
+        if (changeType != InventoryTracker.ChangeType.ADDED
+                || Mod.hud == null
+                || component != Mod.hud.getInventoryWindow().getInventoryListComponent())
+            return;
+        for (Link link : links) {
+            if (!ItemClassifier.is(item, link.category))
+                continue;
+            link.lastInput = System.currentTimeMillis();
+            unhold(link.consumer);
+        }
+    }
+
+    private static void hold(BotProxy bot, long duration) {
+        if (!bot.isInstantiated() || bot.isInterrupted())
+            return;
+        bot.hold(duration);
+        heldBots.add(bot);
+    }
+
+    private static void unhold(BotProxy bot) {
+        if (!heldBots.remove(bot))
+            return;
+        if (bot.isInstantiated())
+            bot.unhold();
+    }
+
+    public enum Signal {
+        /**
+         * The consumer has nothing to do
+         */
+        NO_INPUT,
+        /**
+         * The consumer can't put its output anywhere
+         */
+        OUTPUT_FULL,
+        /**
+         * The consumer has put some output
+         */
+        PROGRESS
+    }
+
+    private static class Link {
+        final BotProxy producer;
+        final ItemClassifier.Category category;
+        final BotProxy consumer;
+        volatile long lastInput;
+        volatile boolean blocked;
+
+        Link(BotProxy producer, ItemClassifier.Category category, BotProxy consumer) {
+            this.producer = producer;
+            this.category = category;
+            this.consumer = consumer;
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package net.ildar.wurm;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Runs the files of console commands from the "scripts" folder.
+ * The scripts are stepped from the game tick: a wait only sets the time of the next step, so it never blocks the client.
+ * A script is parsed once, the parsed script is reused until its file is changed.
+ * <p>
+ * Besides the console commands a script may contain:
+ * <pre>
+ * # comment
+ * wait 5000                  - wait for 5 seconds
+ * waitfor stamina > 0.9      - wait until the condition holds
+ * if count stone shards > 100
+ * else
+ * end
+ * while damage < 0.5
+ * end
+ * repeat 10                  - "repeat" without a number loops until the script is stopped
+ * end
+ * stop                       - end the script
+ * </pre>
+ * The conditions compare stamina, damage, thirst, progress or "count item name" (the number of such items in
+ * the inventory) with a number using &lt;, &gt;, &lt;=, &gt;=, == or !=.
+ */
+public class ScriptEngine {
+    private static final File SCRIPTS_FOLDER = new File("scripts");
+    //a script without waits gives the control back to the game after this number of steps
+    private static final int MAX_STEPS_PER_TICK = 100;
+    //the condition of "waitfor" is checked with this period, the item count scans the inventory
+    private static final long WAIT_FOR_CHECK_PERIOD = 300;
+
+    private static final Map<String, Script> cache = new HashMap<>();
+    private static final Map<String, Run> runs = new LinkedHashMap<>();
+
+    public static void handleInput(String[] input) {
+        if (input.length == 2 && input[0].equals("run"))
+            run(input[1]);
+        else if (input.length == 1 && input[0].equals("stop"))
+            stopAll();
+        else if (input.length == 2 && input[0].equals("stop"))
+            stop(input[1]);
+        else if (input.length == 1 && input[0].equals("list")) {
+            synchronized (runs) {
+                if (runs.isEmpty())
+                    Utils.consolePrint("No running scripts");
+                runs.keySet().forEach(name -> Utils.consolePrint(name + " is running"));
+            }
+        } else
+            Utils.consolePrint("Usage: " + Mod.ConsoleCommand.script.name() + " " + Mod.ConsoleCommand.script.getUsage());
+    }
+
+    public static void run(String name) {
+        Script script;
+        try {
+            script = load(name);
+        } catch (IOException e) {
+            Utils.consolePrint("Can't read the script \"" + name + "\" - " + e.getMessage());
+            return;
+        } catch (IllegalArgumentException e) {
+            Utils.consolePrint("Error in the script \"" + name + "\" - " + e.getMessage());
+            return;
+        }
+        synchronized (runs) {
+            runs.put(name, new Run(script));
+        }
+        Utils.consolePrint("Script \"" + name + "\" is started");
+    }
+
+    public static void stop(String name) {
+        synchronized (runs) {
+            if (runs.remove(name) != null)
+                Utils.consolePrint("Script \"" + name + "\" is stopped");
+            else
+                Utils.consolePrint("Script \"" + name + "\" is not running");
+        }
+    }
+
+    public static void stopAll() {
+        synchronized (runs) {
+            runs.clear();
+        }
+        Utils.consolePrint("All scripts are stopped");
+    }
+
+    /**
+     * Called on each game tick
+     */
+    public static void tick() {
+        List<Map.Entry<String, Run>> dueRuns;
+        long now = System.currentTimeMillis();
+        synchronized (runs) {
+            if (runs.isEmpty())
+                return;
+            dueRuns = new ArrayList<>();
+            for (Map.Entry<String, Run> entry : runs.entrySet())
+                if (entry.getValue().wakeTime <= now)
+                    dueRuns.add(entry);
+        }
+        //the commands are run outside of the lock, so a script may start or stop scripts
+        for (Map.Entry<String, Run> entry : dueRuns) {
+            Run run = entry.getValue();
+            if (!step(run, now)) {
+                synchronized (runs) {
+                    if (runs.get(entry.getKey()) == run) {
+                        runs.remove(entry.getKey());
+                        Utils.consolePrint("Script \"" + entry.getKey() + "\" is finished");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return false if the script is finished
+     */
+    private static boolean step(Run run, long now) {
+        List<Instruction> instructions = run.script.instructions;
+        for (int steps = 0; steps < MAX_STEPS_PER_TICK; steps++) {
+            if (run.pc < 0 || run.pc >= instructions.size())
+                return false;
+            Instruction instruction = instructions.get(run.pc);
+            try {
+                run.pc = instruction.execute(run, now);
+            } catch (Exception e) {
+                Utils.consolePrint("Script error on line " + instruction.line + " - " + e.getMessage());
+                return false;
+            }
+            if (run.wakeTime > now)
+                return true;
+        }
+        return true;
+    }
+
+    private static Script load(String name) throws IOException {
+        File file = new File(SCRIPTS_FOLDER, name.endsWith(".txt") ? name : name + ".txt");
+        long lastModified = file.lastModified();
+        synchronized (cache) {
+            Script script = cache.get(name);
+            if (script == null || script.lastModified != lastModified) {
+                script = new Script(parse(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)), lastModified);
+                cache.put(name, script);
+            }
+            return script;
+        }
+    }
+
+    private static List<Instruction> parse(List<String> lines) {
+        List<Instruction> instructions = new ArrayList<>();
+        //the indexes of the open "if", "else", "while" and "repeat" instructions
+        Deque<Integer> blocks = new ArrayDeque<>();
+        for (int lineIndex = 0; lineIndex < lines.size(); lineIndex++) {
+            String line = lines.get(lineIndex).trim();
+            int lineNumber = lineIndex + 1;
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] tokens = line.split("\\s+");
+            String arguments = line.substring(tokens[0].length()).trim();
+            switch (tokens[0]) {
+                case "wait":
+                case "sleep":
+                    instructions.add(new Wait(lineNumber, parseNumber(arguments, lineNumber)));
+                    break;
+                case "waitfor":
+                    instructions.add(new WaitFor(lineNumber, parseCondition(arguments, lineNumber)));
+                    break;
+                case "if":
+                case "while":
+                    blocks.push(instructions.size());
+                    instructions.add(new JumpUnless(lineNumber, tokens[0], parseCondition(arguments, lineNumber)));
+                    break;
+                case "repeat":
+                    blocks.push(instructions.size());
+                    instructions.add(new Repeat(lineNumber, arguments.isEmpty() ? -1 : (int) parseNumber(arguments, lineNumber)));
+                    break;
+                case "else": {
+                    Instruction block = blocks.isEmpty() ? null : instructions.get(blocks.peek());
+                    if (!(block instanceof JumpUnless) || !((JumpUnless) block).keyword.equals("if"))
+                        throw new IllegalArgumentException("\"else\" without \"if\" on line " + lineNumber);
+                    ((JumpUnless) block).target = instructions.size() + 1;
+                    blocks.pop();
+                    blocks.push(instructions.size());
+                    instructions.add(new Jump(lineNumber, "else"));
+                    break;
+                }
+                case "end": {
+                    if (blocks.isEmpty())
+                        throw new IllegalArgumentException("\"end\" without a block on line " + lineNumber);
+                    int start = blocks.pop();
+                    Instruction block = instructions.get(start);
+                    if (block instanceof Repeat || block instanceof JumpUnless && ((JumpUnless) block).keyword.equals("while")) {
+                        Jump loop = new Jump(lineNumber, "end");
+                        loop.target = start;
+                        instructions.add(loop);
+                    }
+                    if (block instanceof Repeat)
+                        ((Repeat) block).exit = instructions.size();
+                    else
+                        ((Jump) block).target = instructions.size();
+                    break;
+                }
+                case "stop":
+                    Jump stop = new Jump(lineNumber, "stop");
+                    stop.target = -1;
+                    instructions.add(stop);
+                    break;
+                default:
+                    instructions.add(new Command(lineNumber, tokens));
+            }
+        }
+        if (!blocks.isEmpty())
+            throw new IllegalArgumentException("the block on line " + instructions.get(blocks.peek()).line + " has no \"end\"");
+        return instructions;
+    }
+
+    private static double parseNumber(String value, int lineNumber) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad number \"" + value + "\" on line " + lineNumber);
+        }
+    }
+
+    private static Condition parseCondition(String text, int lineNumber) {
+        String[] tokens = text.split("\\s+");
+        if (tokens.length < 3)
+            throw new IllegalArgumentException("bad condition on line " + lineNumber);
+        String operator = tokens[tokens.length - 2];
+        double value = parseNumber(tokens[tokens.length - 1], lineNumber);
+        DoubleSupplier variable;
+        switch (tokens[0]) {
+            case "stamina":
+                variable = () -> WorldSnapshot.get().stamina;
+                break;
+            case "damage":
+                variable = () -> WorldSnapshot.get().damage;
+                break;
+            case "thirst":
+                variable = () -> WorldSnapshot.get().thirst;
+                break;
+            case "progress":
+                variable = () -> WorldSnapshot.get().progress;
+                break;
+            case "count":
+                String itemName = String.join(" ", Arrays.copyOfRange(tokens, 1, tokens.length - 2));
+                if (itemName.isEmpty())
+                    throw new IllegalArgumentException("no item name on line " + lineNumber);
+                variable = () -> Utils.getInventoryItems(itemName).size();
+                break;
+            default:
+                throw new IllegalArgumentException("unknown variable \"" + tokens[0] + "\" on line " + lineNumber);
+        }
+        switch (operator) {
+            case "<":
+                return () -> variable.getAsDouble() < value;
+            case ">":
+                return () -> variable.getAsDouble() > value;
+            case "<=":
+                return () -> variable.getAsDouble() <= value;
+            case ">=":
+                return () -> variable.getAsDouble() >= value;
+            case "==":
+                return () -> variable.getAsDouble() == value;
+            case "!=":
+                return () -> variable.getAsDouble() != value;
+            default:
+                throw new IllegalArgumentException("unknown operator \"" + operator + "\" on line " + lineNumber);
+        }
+    }
+
+    private interface Condition {
+        boolean test();
+    }
+
+    private static class Script {
+        final List<Instruction> instructions;
+        final long lastModified;
+
+        Script(List<Instruction> instructions, long lastModified) {
+            this.instructions = instructions;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private static class Run {
+        final Script script;
+        //the remaining iterations of the active "repeat" blocks by their instruction index
+        final Map<Integer, Integer> counters = new HashMap<>();
+        int pc;
+        long wakeTime;
+
+        Run(Script script) {
+            this.script = script;
+        }
+    }
+
+    private static abstract class Instruction {
+        final int line;
+
+        Instruction(int line) {
+            this.line = line;
+        }
+
+        /**
+         * @return the index of the next instruction
+         */
+        abstract int execute(Run run, long now);
+    }
+
+    private static class Command extends Instruction {
+        final String[] tokens;
+
+        Command(int line, String[] tokens) {
+            super(line);
+            this.tokens = tokens;
+        }
+
+        @Override
+        int execute(Run run, long now) {
+            if (!Mod.getInstance().handleInput(tokens[0], tokens))
+                throw new IllegalArgumentException("unknown command \"" + tokens[0] + "\"");
+            return run.pc + 1;
+        }
+    }
+
+    private static class Wait extends Instruction {
+        final long duration;
+
+        Wait(int line, double duration) {
+            super(line);
+            this.duration = (long) duration;
+        }
+
+        @Override
+        int execute(Run run, long now) {
+            run.wakeTime = now + duration;
+            return run.pc + 1;
+        }
+    }
+
+    private static class WaitFor extends Instruction {
+        final Condition condition;
+
+        WaitFor(int line, Condition condition) {
+            super(line);
+            this.condition = condition;
+        }
+
+        @Override
+        int execute(Run run, long now) {
+            if (condition.test())
+                return run.pc + 1;
+            run.wakeTime = now + WAIT_FOR_CHECK_PERIOD;
+            return run.pc;
+        }
+    }
+
+    private static class Jump extends Instruction {
+        final String keyword;
+        int target;
+
+        Jump(int line, String keyword) {
+            super(line);
+            this.keyword = keyword;
+        }
+
+        @Override
+        int execute(Run run, long now) {
+            return target;
+        }
+    }
+
+    private static class JumpUnless extends Jump {
+        final Condition condition;
+
+        JumpUnless(int line, String keyword, Condition condition) {
+            super(line, keyword);
+            this.condition = condition;
+        }
+
+        @Override
+        int execute(Run run, long now) {
+            return condition.test() ? run.pc + 1 : target;
+        }
+    }
+
+    private static class Repeat extends Instruction {
+        final int count;
+        int exit;
+
+        Repeat(int line, int count) {
+            super(line);
+            this.count = count;
+        }
+
+        @Override
+        int execute(Run run, long now) {
+            if (count < 0)
+                return run.pc + 1;
+            int remaining = run.counters.getOrDefault(run.pc, count);
+            if (remaining <= 0) {
+                run.counters.remove(run.pc);
+                return exit;
+            }
+            run.counters.put(run.pc, remaining - 1);
+            return run.pc + 1;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package net.ildar.wurm;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hashed timer wheel. Scheduled values are placed into slots by their due tick,
+ * so scheduling and cancelling don't depend on the number of scheduled values.
+ * The wheel has no thread of its own - the owner advances it and handles the due values.
+ */
+public class TimerWheel<T> {
+    private final long tickDuration;
+    private final List<Timeout<T>>[] slots;
+    private final int mask;
+    private long currentTick = -1;
+
+    /**
+     * @param size         the number of slots. Rounded up to a power of two
+     * @param tickDuration the duration of a tick in milliseconds
+     */
+    @SuppressWarnings("unchecked")
+    public TimerWheel(int size, long tickDuration) {
+        int slotCount = 1;
+        while (slotCount < size)
+            slotCount <<= 1;
+        this.tickDuration = tickDuration;
+        this.slots = new List[slotCount];
+        for (int i = 0; i < slotCount; i++)
+            slots[i] = new ArrayList<>();
+        this.mask = slotCount - 1;
+    }
+
+    /**
+     * @param dueTime the time in milliseconds. Values with due time in the past are returned on the next advance
+     */
+    public synchronized Timeout<T> schedule(T value, long dueTime) {
+        long dueTick = dueTime / tickDuration;
+        if (currentTick >= 0 && dueTick <= currentTick)
+            dueTick = currentTick + 1;
+        Timeout<T> timeout = new Timeout<>(value, dueTick);
+        slots[(int) (dueTick & mask)].add(timeout);
+        return timeout;
+    }
+
+    public synchronized void cancel(Timeout<T> timeout) {
+        if (timeout != null)
+            slots[(int) (timeout.dueTick & mask)].remove(timeout);
+    }
+
+    /**
+     * Moves the wheel to provided time
+     *
+     * @return the values that became due, in order of their slots
+     */
+    public synchronized List<T> advance(long now) {
+        long nowTick = now / tickDuration;
+        List<T> dueValues = new ArrayList<>();
+        if (currentTick >= 0 && nowTick <= currentTick)
+            return dueValues;
+        if (currentTick < 0 || nowTick - currentTick >= slots.length) {
+            for (List<Timeout<T>> slot : slots)
+                collectDue(slot, nowTick, dueValues);
+        } else {
+            for (long tick = currentTick + 1; tick <= nowTick; tick++)
+                collectDue(slots[(int) (tick & mask)], nowTick, dueValues);
+        }
+        currentTick = nowTick;
+        return dueValues;
+    }
+
+    private void collectDue(List<Timeout<T>> slot, long nowTick, List<T> dueValues) {
+        for (Iterator<Timeout<T>> iter = slot.iterator(); iter.hasNext(); ) {
+            Timeout<T> timeout = iter.next();
+            if (timeout.dueTick <= nowTick) {
+                iter.remove();
+                dueValues.add(timeout.value);
+            }
+        }
+    }
+
+    public static class Timeout<T> {
+        private final T value;
+        private final long dueTick;
+
+        private Timeout(T value, long dueTick) {
+            this.value = value;
+            this.dueTick = dueTick;
+        }
+
+        public T getValue() {
+            return value;
+        }
+    }
+}
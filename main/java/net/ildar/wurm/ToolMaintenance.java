@@ -0,0 +1,90 @@
+package net.ildar.wurm;
+
+import com.wurmonline.client.game.inventory.InventoryMetaItem;
+import com.wurmonline.shared.constants.PlayerAction;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Repairs of the tools used by the bots. Only one repair of a tool is sent until the damage of the tool drops
+ * or the repair times out, no matter how many bots or loop iterations ask for it.
+ */
+public class ToolMaintenance {
+    public static final float DEFAULT_THRESHOLD = 10;
+    private static final long REPAIR_TIMEOUT = 15000;
+    //the spare tool may be a bit worse than the tool being repaired
+    private static final float SPARE_QUALITY_TOLERANCE = 1;
+
+    private static final Map<Long, Repair> repairs = new HashMap<>();
+
+    /**
+     * Sends a repair of the tool if its damage is above the threshold and the tool isn't being repaired already
+     *
+     * @return true if the repair was sent
+     */
+    public static boolean repair(InventoryMetaItem tool, float threshold) {
+        if (tool == null)
+            return false;
+        synchronized (repairs) {
+            Repair repair = repairs.get(tool.getId());
+            long now = System.currentTimeMillis();
+            if (repair != null) {
+                if (tool.getDamage() < repair.damage || Math.abs(now - repair.sendTime) > REPAIR_TIMEOUT)
+                    repairs.remove(tool.getId());
+                else
+                    return false;
+            }
+            if (tool.getDamage() <= threshold)
+                return false;
+            repairs.put(tool.getId(), new Repair(tool.getDamage(), now));
+        }
+        Mod.hud.sendAction(PlayerAction.REPAIR, tool.getId());
+        return true;
+    }
+
+    public static boolean repair(InventoryMetaItem tool) {
+        return repair(tool, DEFAULT_THRESHOLD);
+    }
+
+    public static boolean isBeingRepaired(long toolId) {
+        synchronized (repairs) {
+            Repair repair = repairs.get(toolId);
+            return repair != null && Math.abs(System.currentTimeMillis() - repair.sendTime) <= REPAIR_TIMEOUT;
+        }
+    }
+
+    /**
+     * Repairs the tool if needed and looks for a spare one to work with in the meantime
+     *
+     * @return a spare tool of the same kind and about the same quality if the tool is being repaired, the tool itself otherwise
+     */
+    public static InventoryMetaItem getUsable(InventoryMetaItem tool, float threshold) {
+        if (tool == null)
+            return null;
+        repair(tool, threshold);
+        if (!isBeingRepaired(tool.getId()))
+            return tool;
+        for (InventoryMetaItem spare : Utils.getInventoryItems(tool.getBaseName())) {
+            if (spare.getId() == tool.getId()
+                    || !spare.getBaseName().equals(tool.getBaseName())
+                    || spare.getMaterialId() != tool.getMaterialId()
+                    || spare.getQuality() < tool.getQuality() - SPARE_QUALITY_TOLERANCE
+                    || spare.getDamage() > threshold
+                    || isBeingRepaired(spare.getId()))
+                continue;
+            return spare;
+        }
+        return tool;
+    }
+
+    private static class Repair {
+        final float damage;
+        final long sendTime;
+
+        Repair(float damage, long sendTime) {
+            this.damage = damage;
+            this.sendTime = sendTime;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package net.ildar.wurm;
+
+import com.wurmonline.client.game.inventory.InventoryMetaItem;
+import com.wurmonline.client.renderer.gui.InventoryListComponent;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Picks the best tool of a kind from the inventory by effective quality.
+ * The inventory is scanned once, after that the candidates are updated by {@link InventoryTracker} events,
+ * so the choice follows the wear, the repairs and the loss of tools.
+ * The current tool is kept until another one is better by {@link #SWITCH_MARGIN}, or the current tool is lost or being repaired,
+ * so two tools of similar quality don't take turns.
+ * Register the selector with {@link InventoryTracker#addListener(InventoryTracker.Listener)} to keep it up to date.
+ */
+public class ToolSelector implements InventoryTracker.Listener {
+    /**
+     * The difference in effective quality that makes the selector switch to another tool
+     */
+    public static final float SWITCH_MARGIN = 5;
+
+    private final String toolName;
+    private final Map<Long, InventoryMetaItem> candidates = new HashMap<>();
+    private InventoryListComponent inventory;
+    private InventoryMetaItem tool;
+    private boolean loaded;
+
+    public ToolSelector(String toolName) {
+        this.toolName = toolName;
+    }
+
+    public static float getEffectiveQuality(InventoryMetaItem item) {
+        return item.getQuality() * (1 - item.getDamage() / 100);
+    }
+
+    /**
+     * Scans the inventory for the best tool
+     *
+     * @return the tool with the highest effective quality or null
+     */
+    public static InventoryMetaItem findBest(String toolName) {
+        return Utils.getInventoryItems(toolName)
+                .stream()
+                .filter(item -> item.getBaseName().contains(toolName))
+                .max(Comparator.comparingDouble(ToolSelector::getEffectiveQuality))
+                .orElse(null);
+    }
+
+    /**
+     * @return the best tool at the moment or null if there is no tool
+     */
+    public synchronized InventoryMetaItem get() {
+        if (!loaded)
+            load();
+        InventoryMetaItem current = tool == null ? null : candidates.get(tool.getId());
+        InventoryMetaItem best = null;
+        for (InventoryMetaItem candidate : candidates.values())
+            if (best == null || getEffectiveQuality(candidate) > getEffectiveQuality(best))
+                best = candidate;
+        if (current != null && !ToolMaintenance.isBeingRepaired(current.getId())
+                && (best == null || getEffectiveQuality(best) - getEffectiveQuality(current) < SWITCH_MARGIN))
+            best = current;
+        if (best != null && tool != null && best.getId() != tool.getId())
+            Utils.consolePrint("Switching to " + best.getDisplayName()
+                    + " with QL:" + best.getQuality()
+                    + " DMG:" + best.getDamage());
+        tool = best;
+        return tool;
+    }
+
+    @Override
+    public synchronized void inventoryChanged(InventoryListComponent component, InventoryMetaItem item, InventoryTracker.ChangeType changeType) {
+        if (!loaded || component != inventory)
+            return;
+        if (changeType == InventoryTracker.ChangeType.REMOVED || !item.getBaseName().contains(toolName))
+            candidates.remove(item.getId());
+        else
+            candidates.put(item.getId(), item);
+    }
+
+    private void load() {
+        inventory = Mod.hud.getInventoryWindow().getInventoryListComponent();
+        candidates.clear();
+        for (InventoryMetaItem item : Utils.getInventoryItems(toolName))
+            if (item.getBaseName().contains(toolName))
+                candidates.put(item.getId(), item);
+        loaded = true;
+    }
+}
@@ -3,6 +3,7 @@ package net.ildar.wurm;
 import com.wurmonline.client.game.SkillLogicSet;
 import com.wurmonline.client.game.inventory.InventoryMetaItem;
 import com.wurmonline.client.renderer.gui.*;
+import com.wurmonline.shared.constants.PlayerAction;
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 import org.gotti.wurmunlimited.modloader.classhooks.HookManager;
 
@@ -424,8 +425,7 @@ public class Utils {
         int x = Mod.hud.getWorld().getClient().getXMouse();
         int y = Mod.hud.getWorld().getClient().getYMouse();
         try {
-            for (int i = 0; i < Mod.getInstance().components.size(); i++) {
-                WurmComponent wurmComponent = Mod.getInstance().components.get(i);
+            for (WurmComponent wurmComponent : WindowRegistry.getComponents()) {
                 if (wurmComponent.contains(x, y)) {
                     if (filter != null && !filter.apply(wurmComponent))
                         continue;
@@ -441,9 +441,10 @@ public class Utils {
 
     public static int[][] getAreaCoordinates() {
         int[][] area = new int[9][2];
-        int x = Mod.hud.getWorld().getPlayerCurrentTileX();
-        int y = Mod.hud.getWorld().getPlayerCurrentTileY();
-        int direction = Math.round(Mod.hud.getWorld().getPlayerRotX() / 90);
+        WorldSnapshot snapshot = WorldSnapshot.get();
+        int x = snapshot.tileX;
+        int y = snapshot.tileY;
+        int direction = Math.round(snapshot.rotX / 90);
         switch (direction) {
             case 1:
                 for (int i = 0; i < 3; i++)
@@ -539,6 +540,14 @@ public class Utils {
         return mlc.getMaxNumberOfActions();
     }
 
+    /**
+     * Stops all actions of the player
+     */
+    public static void stopActions() {
+        for (int i = 0; i < getMaxActionNumber(); i++)
+            Mod.hud.sendAction(PlayerAction.STOP, 0);
+    }
+
     public static void writeToConsoleInputLineRaw(String s) {
         try {
             Object consoleComponent = ReflectionUtil.getPrivateField(Mod.hud, ReflectionUtil.getField(Mod.hud.getClass(), "consoleComponent"));
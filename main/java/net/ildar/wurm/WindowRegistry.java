@@ -0,0 +1,218 @@
+package net.ildar.wurm;
+
+import com.wurmonline.client.game.inventory.InventoryMetaItem;
+import com.wurmonline.client.renderer.gui.HeadsUpDisplay;
+import com.wurmonline.client.renderer.gui.InventoryListComponent;
+import com.wurmonline.client.renderer.gui.InventoryWindow;
+import com.wurmonline.client.renderer.gui.ItemListWindow;
+import com.wurmonline.client.renderer.gui.WurmComponent;
+import org.gotti.wurmunlimited.modloader.ReflectionUtil;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps track of opened inventory windows indexed by the id and the base name of their root items.
+ * Updated from the HUD hooks on the game thread, so lookups don't have to scan all components by reflection.
+ */
+public class WindowRegistry {
+    private static final Map<ItemListWindow, Entry> windows = new IdentityHashMap<>();
+    private static final List<Entry> unresolvedEntries = new ArrayList<>();
+    private static final Map<Long, Entry> entriesById = new HashMap<>();
+    //sorted by the base name, so the windows of a kind like "pile of" are found by the prefix
+    private static final NavigableMap<String, List<Entry>> entriesByName = new TreeMap<>();
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    //the copy of HUD components, the live list is changed by the game thread
+    private static List<WurmComponent> hudComponents;
+    private static Field componentField;
+    private static Field hudComponentsField;
+
+    /**
+     * The listeners are notified on the game thread, outside of the registry lock
+     */
+    public static void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Called from the HUD hooks on the game thread. The windows are reconciled only if the list of components
+     * was changed, the components are compared by identity, so a window closed and another opened in the same tick
+     * are noticed too
+     */
+    static void update(HeadsUpDisplay hud) {
+        List<Entry> opened = new ArrayList<>();
+        List<Entry> closed = new ArrayList<>();
+        synchronized (WindowRegistry.class) {
+            List<WurmComponent> components;
+            try {
+                if (hudComponentsField == null)
+                    hudComponentsField = ReflectionUtil.getField(hud.getClass(), "components");
+                components = ReflectionUtil.getPrivateField(hud, hudComponentsField);
+            } catch (Exception e) {
+                Utils.consolePrint("Error on updating the window registry " + e.getMessage());
+                return;
+            }
+            if (components != null && !isSame(components, hudComponents)) {
+                hudComponents = new ArrayList<>(components);
+                reconcile(closed);
+            }
+            if (!unresolvedEntries.isEmpty())
+                resolveEntries(opened);
+        }
+        for (Listener listener : listeners) {
+            for (Entry entry : closed)
+                listener.windowClosed(entry);
+            for (Entry entry : opened)
+                listener.windowOpened(entry);
+        }
+    }
+
+    /**
+     * @return a copy of HUD components in their current order
+     */
+    public static synchronized List<WurmComponent> getComponents() {
+        if (hudComponents == null)
+            return new ArrayList<>();
+        return new ArrayList<>(hudComponents);
+    }
+
+    /**
+     * @return the opened window with provided root item id or null
+     */
+    public static synchronized Entry get(long rootItemId) {
+        return entriesById.get(rootItemId);
+    }
+
+    /**
+     * @return opened windows whose root item base name starts with provided string(case insensitive)
+     */
+    public static synchronized List<Entry> find(String namePrefix) {
+        String key = namePrefix.toLowerCase();
+        List<Entry> result = new ArrayList<>();
+        for (List<Entry> entries : entriesByName.subMap(key, true, key + Character.MAX_VALUE, false).values())
+            result.addAll(entries);
+        return result;
+    }
+
+    /**
+     * @return the first opened window whose root item base name starts with provided string or null
+     */
+    public static synchronized Entry findFirst(String namePrefix) {
+        List<Entry> entries = find(namePrefix);
+        return entries.isEmpty() ? null : entries.get(0);
+    }
+
+    private static boolean isSame(List<WurmComponent> components, List<WurmComponent> copy) {
+        if (copy == null || components.size() != copy.size())
+            return false;
+        for (int i = 0; i < copy.size(); i++)
+            if (components.get(i) != copy.get(i))
+                return false;
+        return true;
+    }
+
+    private static void reconcile(List<Entry> closed) {
+        if (hudComponents == null)
+            return;
+        Set<ItemListWindow> shownWindows = Collections.newSetFromMap(new IdentityHashMap<>());
+        try {
+            for (WurmComponent component : hudComponents) {
+                if (!(component instanceof ItemListWindow) || component instanceof InventoryWindow)
+                    continue;
+                ItemListWindow window = (ItemListWindow) component;
+                shownWindows.add(window);
+                if (!windows.containsKey(window)) {
+                    Entry entry = new Entry(window, getListComponent(window));
+                    windows.put(window, entry);
+                    unresolvedEntries.add(entry);
+                }
+            }
+        } catch (Exception e) {
+            Utils.consolePrint("Error on updating the window registry " + e.getMessage());
+            return;
+        }
+        for (Iterator<Map.Entry<ItemListWindow, Entry>> iter = windows.entrySet().iterator(); iter.hasNext(); ) {
+            Entry entry = iter.next().getValue();
+            if (shownWindows.contains(entry.window))
+                continue;
+            iter.remove();
+            unresolvedEntries.remove(entry);
+            if (entry.rootItem != null) {
+                entriesById.remove(entry.rootItem.getId());
+                List<Entry> namedEntries = entriesByName.get(entry.key);
+                if (namedEntries != null) {
+                    namedEntries.remove(entry);
+                    if (namedEntries.isEmpty())
+                        entriesByName.remove(entry.key);
+                }
+                closed.add(entry);
+            }
+        }
+    }
+
+    //root items arrive from the server after the window was added to HUD, so the indexing is postponed until then
+    private static void resolveEntries(List<Entry> opened) {
+        for (Iterator<Entry> iter = unresolvedEntries.iterator(); iter.hasNext(); ) {
+            Entry entry = iter.next();
+            InventoryMetaItem rootItem = null;
+            try {
+                if (entry.component != null)
+                    rootItem = Utils.getRootItem(entry.component);
+            } catch (Exception ignored) {
+            }
+            if (rootItem == null)
+                continue;
+            iter.remove();
+            entry.rootItem = rootItem;
+            entry.key = rootItem.getBaseName().toLowerCase();
+            entriesById.put(rootItem.getId(), entry);
+            entriesByName.computeIfAbsent(entry.key, k -> new ArrayList<>()).add(entry);
+            opened.add(entry);
+        }
+    }
+
+    private static InventoryListComponent getListComponent(ItemListWindow window) throws NoSuchFieldException, IllegalAccessException {
+        if (componentField == null)
+            componentField = ReflectionUtil.getField(ItemListWindow.class, "component");
+        return ReflectionUtil.getPrivateField(window, componentField);
+    }
+
+    public interface Listener {
+        void windowOpened(Entry entry);
+
+        void windowClosed(Entry entry);
+    }
+
+    public static class Entry {
+        private final ItemListWindow window;
+        private final InventoryListComponent component;
+        private InventoryMetaItem rootItem;
+        private String key;
+
+        private Entry(ItemListWindow window, InventoryListComponent component) {
+            this.window = window;
+            this.component = component;
+        }
+
+        public ItemListWindow getWindow() {
+            return window;
+        }
+
+        public InventoryListComponent getComponent() {
+            return component;
+        }
+
+        public InventoryMetaItem getRootItem() {
+            return rootItem;
+        }
+
+        public long getRootItemId() {
+            return rootItem.getId();
+        }
+    }
+}
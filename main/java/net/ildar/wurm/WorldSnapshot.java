@@ -0,0 +1,170 @@
+package net.ildar.wurm;
+
+import com.wurmonline.client.game.PlayerObj;
+import com.wurmonline.client.game.World;
+import com.wurmonline.client.renderer.PickableUnit;
+import com.wurmonline.client.renderer.gui.CreationWindow;
+import org.gotti.wurmunlimited.modloader.ReflectionUtil;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable view of the player and world state, captured once per client tick.
+ * Bots should read the values from here instead of calling into the client on every iteration.
+ */
+public final class WorldSnapshot {
+    private static final String[] TRACKED_SKILLS = {"favor", "foraging", "botanizing", "forestry"};
+    private static final long WAIT_TIMEOUT = 10000;
+    private static final Object tickLock = new Object();
+    private static volatile WorldSnapshot current;
+    private static volatile Thread gameThread;
+    private static boolean captureErrorReported;
+
+    private static Field progressBarField;
+    private static Field progressField;
+    private static Field progressTitleField;
+    private static Field selectedUnitField;
+
+    public final long time;
+    public final float stamina;
+    public final float damage;
+    public final float thirst;
+    public final float hunger;
+    public final float posX;
+    public final float posY;
+    public final float posH;
+    public final float rotX;
+    public final float rotY;
+    public final int tileX;
+    public final int tileY;
+    public final int layer;
+    public final float progress;
+    public final String progressTitle;
+    public final int actionInUse;
+    public final PickableUnit selectedUnit;
+    private final Map<String, Float> skills;
+
+    private WorldSnapshot(World world, CreationWindow creationWindow, Object selectBar) throws Exception {
+        PlayerObj player = world.getPlayer();
+        time = System.currentTimeMillis();
+        stamina = player.getStamina();
+        damage = player.getDamage();
+        thirst = player.getThirst();
+        hunger = player.getHunger();
+        posX = world.getPlayerPosX();
+        posY = world.getPlayerPosY();
+        posH = world.getPlayerPosH();
+        rotX = world.getPlayerRotX();
+        rotY = world.getPlayerRotY();
+        tileX = world.getPlayerCurrentTileX();
+        tileY = world.getPlayerCurrentTileY();
+        layer = world.getPlayerLayer();
+
+        if (progressBarField == null)
+            progressBarField = ReflectionUtil.getField(creationWindow.getClass(), "progressBar");
+        Object progressBar = ReflectionUtil.getPrivateField(creationWindow, progressBarField);
+        if (progressField == null) {
+            progressField = ReflectionUtil.getField(progressBar.getClass(), "progress");
+            progressTitleField = ReflectionUtil.getField(progressBar.getClass(), "title");
+        }
+        progress = ReflectionUtil.getPrivateField(progressBar, progressField);
+        progressTitle = ReflectionUtil.getPrivateField(progressBar, progressTitleField);
+        actionInUse = creationWindow.getActionInUse();
+
+        if (selectedUnitField == null)
+            selectedUnitField = ReflectionUtil.getField(selectBar.getClass(), "selectedUnit");
+        selectedUnit = ReflectionUtil.getPrivateField(selectBar, selectedUnitField);
+
+        Map<String, Float> skills = new HashMap<>();
+        for (String skill : TRACKED_SKILLS)
+            skills.put(skill, player.getSkillSet().getSkillValue(skill));
+        this.skills = Collections.unmodifiableMap(skills);
+    }
+
+    /**
+     * Called from the game thread on every HUD tick
+     */
+    static void capture() {
+        gameThread = Thread.currentThread();
+        if (Mod.hud == null || Mod.hud.getWorld() == null || Mod.hud.getWorld().getPlayer() == null)
+            return;
+        try {
+            current = new WorldSnapshot(Mod.hud.getWorld(), Mod.hud.getCreationWindow(), Mod.hud.getSelectBar());
+            synchronized (tickLock) {
+                tickLock.notifyAll();
+            }
+        } catch (Exception e) {
+            if (!captureErrorReported) {
+                Utils.consolePrint("Error on capturing the world snapshot " + e.getMessage());
+                captureErrorReported = true;
+            }
+        }
+    }
+
+    /**
+     * @return the snapshot from the last client tick. Waits for the first tick if there was none yet.
+     * If a capture fails the last good snapshot is returned
+     * @throws IllegalStateException if no snapshot was captured in time, the bot is stopped with the message
+     */
+    public static WorldSnapshot get() {
+        WorldSnapshot snapshot = current;
+        if (snapshot == null)
+            snapshot = awaitAfter(null);
+        return snapshot;
+    }
+
+    /**
+     * Waits for the snapshot of the next client tick.
+     * Use it after the player was moved to read the updated position
+     */
+    public static WorldSnapshot next() {
+        return awaitAfter(current);
+    }
+
+    private static WorldSnapshot awaitAfter(WorldSnapshot previous) {
+        //the game thread can't wait for itself
+        if (Thread.currentThread() != gameThread) {
+            long deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+            synchronized (tickLock) {
+                try {
+                    long now;
+                    while (current == previous && (now = System.currentTimeMillis()) < deadline)
+                        tickLock.wait(deadline - now);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        WorldSnapshot snapshot = current;
+        if (snapshot == null)
+            throw new IllegalStateException("the world state is not available yet");
+        return snapshot;
+    }
+
+    /**
+     * @return true if player's stamina (with damage taken into account) is above given threshold
+     */
+    public boolean hasStamina(float threshold) {
+        return stamina + damage > threshold;
+    }
+
+    /**
+     * @return true if no action is being performed by the player right now
+     */
+    public boolean isIdle() {
+        return progress == 0f && actionInUse == 0;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the skill is not captured with the snapshot
+     */
+    public float getSkillValue(String skill) {
+        Float value = skills.get(skill);
+        if (value == null)
+            throw new IllegalArgumentException("The skill \"" + skill + "\" is not tracked by the world snapshot");
+        return value;
+    }
+}
@@ -4,13 +4,14 @@ import com.wurmonline.client.comm.ServerConnectionListenerClass;
 import com.wurmonline.client.game.inventory.InventoryMetaItem;
 import com.wurmonline.client.renderer.PickableUnit;
 import com.wurmonline.client.renderer.cell.CreatureCellRenderable;
-import com.wurmonline.client.renderer.gui.CreationWindow;
 import com.wurmonline.client.renderer.gui.PaperDollInventory;
 import com.wurmonline.client.renderer.gui.PaperDollSlot;
 import com.wurmonline.shared.constants.PlayerAction;
+import net.ildar.wurm.ActionSlots;
 import net.ildar.wurm.BotRegistration;
 import net.ildar.wurm.Mod;
 import net.ildar.wurm.Utils;
+import net.ildar.wurm.WorldSnapshot;
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 
 import java.util.Map;
@@ -66,18 +67,13 @@ public class ArcherBot extends BotBase {
         long mobId = pickableUnit.getId();
         boolean isArcheryTarget = pickableUnit.getHoverName().contains("archery target");
 
-        int maxActions = Utils.getMaxActionNumber();
-        CreationWindow creationWindow = Mod.hud.getCreationWindow();
-        Object progressBar = ReflectionUtil.getPrivateField(creationWindow,
-                ReflectionUtil.getField(creationWindow.getClass(), "progressBar"));
         registerEventProcessors();
         while (isActive()) {
             waitOnPause();
-            float stamina = Mod.hud.getWorld().getPlayer().getStamina();
-            float damage = Mod.hud.getWorld().getPlayer().getDamage();
-            float progress = ReflectionUtil.getPrivateField(progressBar,
-                    ReflectionUtil.getField(progressBar.getClass(), "progress"));
-            if ((stamina + damage) > staminaThreshold && creationWindow.getActionInUse() == 0 && progress == 0f) {
+            WorldSnapshot snapshot = WorldSnapshot.get();
+            float stamina = snapshot.stamina;
+            float damage = snapshot.damage;
+            if ((stamina + damage) > staminaThreshold && snapshot.isIdle()) {
                 if (stringBreaks) {
                     InventoryMetaItem bowstring = Utils.getInventoryItem("bow string");
                     if (bowstring != null) {
@@ -85,6 +81,7 @@ public class ArcherBot extends BotBase {
                                 new long[]{bow.getId()}, new PlayerAction("", (short) 132, PlayerAction.ANYTHING));//change bowstring
                     }
                 }
+                int maxActions = ActionSlots.getShare();
                 for (int i = 0; i < maxActions; i++)
                     Mod.hud.getWorld().getServerConnection().sendAction(bow.getId(), new long[]{mobId}, (!isArcheryTarget ? PlayerAction.SHOOT : new PlayerAction("", (short) 134, PlayerAction.ANYTHING)));
 
@@ -38,6 +38,7 @@ class AreaAssistant {
         if (movedAhead < height - 1) {
             for (int tiles = 0; tiles < moveAheadDistance; tiles++) {
                 if (movedAhead >= height - 1) break;
+                bot.waitOnPause();
                 Utils.movePlayerBySteps(4, STEPS_IN_MOVE, stepTimeout);
                 movedAhead++;
             }
@@ -49,6 +50,7 @@ class AreaAssistant {
             Thread.sleep(300);
             for (int tiles = 0; tiles < moveRightDistance; tiles++) {
                 if (movedToRight >= width - 1) break;
+                bot.waitOnPause();
                 Utils.movePlayerBySteps(4, STEPS_IN_MOVE, stepTimeout);
                 movedToRight++;
             }
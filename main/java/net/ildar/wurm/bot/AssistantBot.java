@@ -2,18 +2,22 @@ package net.ildar.wurm.bot;
 
 import com.wurmonline.client.game.inventory.InventoryMetaItem;
 import com.wurmonline.client.renderer.PickableUnit;
-import com.wurmonline.client.renderer.gui.CreationWindow;
 import com.wurmonline.client.renderer.gui.PaperDollInventory;
 import com.wurmonline.client.renderer.gui.PaperDollSlot;
 import com.wurmonline.shared.constants.PlayerAction;
+import net.ildar.wurm.ActionRequest;
+import net.ildar.wurm.ActionSlots;
 import net.ildar.wurm.BotRegistration;
+import net.ildar.wurm.CombinePlanner;
+import net.ildar.wurm.ItemClassifier;
 import net.ildar.wurm.Mod;
+import net.ildar.wurm.TimerWheel;
 import net.ildar.wurm.Utils;
+import net.ildar.wurm.WorldSnapshot;
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 
-import java.util.Comparator;
-import java.util.InputMismatchException;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.stream.Collectors;
 
 public class AssistantBot extends BotBase {
@@ -23,50 +27,48 @@ public class AssistantBot extends BotBase {
     private long bodyId;
     private boolean wovCasting;
     private long lastWOV;
-    private boolean successfullCastStart;
-    private boolean successfullCasting;
-    private boolean needWaitWov;
 
     private boolean lockpicking;
     private long chestId;
     private long lastLockpicking;
     private long lockpickingTimeout;
-    private boolean successfullStartOfLockpicking;
     private int lockpickingResult;
-    private boolean successfullLocking;
-    private boolean noLock;
 
     private boolean drinking;
     private long waterId;
-    private boolean successfullDrinkingStart;
-    private boolean successfullDrinking;
 
     private boolean trashCleaning;
     private long trashCleaningTimeout;
     private long lastTrashCleaning;
     private long trashBinId;
-    private boolean successfullStartTrashCleaning;
 
     private boolean praying;
     private long altarId;
     private long lastPrayer;
     private long prayingTimeout;
-    private boolean successfullStartOfPraying;
 
     private boolean sacrificing;
     private long sacrificeAltarId;
     private long lastSacrifice;
     private long sacrificeTimeout;
-    private boolean successfullStartOfSacrificing;
 
     private boolean kindlingBurning;
     private long forgeId;
     private long lastBurning;
     private long kindlingBurningTimeout;
-    private boolean successfullStartOfBurning;
 
     private boolean verbose = false;
 
+    private static final long TICK_DURATION = 100;
+    //the action slot of a task is given back to the other bots if the task hangs
+    private static final long ACTION_SLOT_TTL = 60000;
+    private final TimerWheel<ActionTask> timerWheel = new TimerWheel<>(512, TICK_DURATION);
+    private final PriorityQueue<ActionTask> readyTasks = new PriorityQueue<>(Comparator.comparingInt(task -> task.priority));
+    private final List<ActionTask> tasks = new ArrayList<>();
+    private final Queue<ActionTask> wokenTasks = new ConcurrentLinkedQueue<>();
+    private ActionTask actionQueueOwner;
+    private volatile boolean rescheduleRequested;
+
     public AssistantBot() {
         registerInputHandler(AssistantBot.InputKey.w, input -> toggleDrinking(0));
         registerInputHandler(AssistantBot.InputKey.wid, this::toggleDrinkingByTargetId);
@@ -89,6 +91,15 @@ public class AssistantBot extends BotBase {
         registerInputHandler(AssistantBot.InputKey.lt, this::setLockpickingTimeout);
         registerInputHandler(AssistantBot.InputKey.lid, this::toggleLockpickingByTargetId);
         registerInputHandler(AssistantBot.InputKey.v, input -> toggleVerbosity());
+
+        tasks.add(new DrinkingTask());
+        tasks.add(new PrayingTask());
+        tasks.add(new SacrificingTask());
+        tasks.add(new CastingTask());
+        tasks.add(new WovCastingTask());
+        tasks.add(new KindlingBurningTask());
+        tasks.add(new LockpickingTask());
+        tasks.add(new TrashCleaningTask());
     }
 
     public static BotRegistration getRegistration() {
@@ -100,235 +111,72 @@ public class AssistantBot extends BotBase {
     @Override
     public void work() throws Exception {
         registerEventProcessors();
-        CreationWindow creationWindow = Mod.hud.getCreationWindow();
-        Object progressBar = ReflectionUtil.getPrivateField(creationWindow, ReflectionUtil.getField(creationWindow.getClass(), "progressBar"));
-        while (isActive()) {
-            waitOnPause();
-            float progress = ReflectionUtil.getPrivateField(progressBar, ReflectionUtil.getField(progressBar.getClass(), "progress"));
-            if (progress == 0f && creationWindow.getActionInUse() == 0) {
-                if (casting) {
-                    float favor = Mod.hud.getWorld().getPlayer().getSkillSet().getSkillValue("favor");
-                    if (favor > spellToCast.favorCap) {
-                        successfullCasting = false;
-                        successfullCastStart = false;
-                        int counter = 0;
-                        while (casting && !successfullCastStart && counter++ < 50 && favor > spellToCast.favorCap) {
-                            if (verbose) Utils.consolePrint("successfullCastStart counter=" + counter);
-                            Mod.hud.getWorld().getServerConnection().sendAction(statuetteId, new long[]{bodyId}, spellToCast.playerAction);
-                            favor = Mod.hud.getWorld().getPlayer().getSkillSet().getSkillValue("favor");
-                            sleep(500);
-                        }
-                        counter = 0;
-                        while (casting && !successfullCasting && counter++ < 100 && favor > spellToCast.favorCap) {
-                            if (verbose) Utils.consolePrint("successfullCasting counter=" + counter);
-                            sleep(2000);
-                        }
-                    }
-                } else if (wovCasting && Math.abs(lastWOV - System.currentTimeMillis()) > 1810000) {
-                    float favor = Mod.hud.getWorld().getPlayer().getSkillSet().getSkillValue("favor");
-                    if (favor > 30) {
-                        successfullCasting = false;
-                        successfullCastStart = false;
-                        needWaitWov = false;
-                        int counter = 0;
-                        while (wovCasting && !successfullCastStart && counter++ < 50 && !needWaitWov) {
-                            if (verbose) Utils.consolePrint("successfullCastStart counter=" + counter);
-                            Mod.hud.getWorld().getServerConnection().sendAction(statuetteId, new long[]{bodyId}, PlayerAction.WISDOM_OF_VYNORA);
-                            sleep(500);
-                        }
-                        counter = 0;
-                        while (wovCasting && !successfullCasting && counter++ < 100 && !needWaitWov) {
-                            if (verbose) Utils.consolePrint("successfullCasting counter=" + counter);
-                            sleep(2000);
-                        }
-                        if (needWaitWov)
-                            lastWOV = lastWOV + 20000;
-                        else
-                            lastWOV = System.currentTimeMillis();
+        long now = System.currentTimeMillis();
+        for (ActionTask task : tasks)
+            task.scheduledTimeout = timerWheel.schedule(task, now);
+        try {
+            while (isActive()) {
+                waitOnPause();
+                if (rescheduleRequested) {
+                    rescheduleRequested = false;
+                    for (ActionTask task : tasks) {
+                        timerWheel.cancel(task.scheduledTimeout);
+                        task.scheduledTimeout = null;
+                        if (!readyTasks.contains(task))
+                            task.scheduledTimeout = timerWheel.schedule(task, System.currentTimeMillis());
                     }
                 }
-                if (drinking) {
-                    float thirst = Mod.hud.getWorld().getPlayer().getThirst();
-                    if (thirst > 0.1) {
-                        successfullDrinking = false;
-                        successfullDrinkingStart = false;
-                        int counter = 0;
-                        while (drinking && !successfullDrinkingStart && counter++ < 50) {
-                            if (verbose) Utils.consolePrint("successfullDrinkingStart counter=" + counter);
-                            Mod.hud.sendAction(new PlayerAction("", (short) 183, PlayerAction.ANYTHING), waterId);
-                            sleep(500);
-                        }
-                        counter = 0;
-                        while (drinking && !successfullDrinking && counter++ < 100) {
-                            if (verbose) Utils.consolePrint("successfullDrinking counter=" + counter);
-                            sleep(2000);
-                        }
-                    }
+                ActionTask wokenTask;
+                while ((wokenTask = wokenTasks.poll()) != null) {
+                    timerWheel.cancel(wokenTask.scheduledTimeout);
+                    wokenTask.scheduledTimeout = null;
+                    if (!readyTasks.contains(wokenTask))
+                        readyTasks.add(wokenTask);
                 }
-                if (lockpicking && Math.abs(lastLockpicking - System.currentTimeMillis()) > lockpickingTimeout) {
-                    long lockpickId = 0;
-                    InventoryMetaItem lockpick = Utils.getInventoryItem("lock picks");
-                    if (lockpick != null)
-                        lockpickId = lockpick.getId();
-                    if (lockpickId == 0) {
-                        Utils.consolePrint("No lockpicks in inventory! Turning lockpicking off");
-                        lockpicking = false;
-                        continue;
-                    }
-
-                    successfullStartOfLockpicking = false;
-                    lockpickingResult = -1;
-                    int counter = 0;
-                    while (lockpicking && !successfullStartOfLockpicking && counter++ < 50 && !noLock) {
-                        if (verbose) Utils.consolePrint("successfullStartOfLockpicking counter=" + counter);
-                        Mod.hud.getWorld().getServerConnection().sendAction(lockpickId,
-                                new long[]{chestId}, new PlayerAction("", (short) 101, PlayerAction.ANYTHING));
-                        sleep(500);
-                    }
-                    if (counter >= 50) continue;
-                    counter = 0;
-                    while (lockpicking && lockpickingResult == -1 && counter++ < 100 && !noLock) {
-                        if (verbose) Utils.consolePrint("lockpickingResult counter=" + counter);
-                        sleep(2000);
-                    }
-                    if (noLock || lockpickingResult > 0) {
-                        long padlockId = 0;
-                        InventoryMetaItem padlock = Utils.getInventoryItem("padlock");
-                        if (padlock != null)
-                            padlockId = padlock.getId();
-                        if (padlockId == 0) {
-                            sleep(1000);
+                readyTasks.addAll(timerWheel.advance(System.currentTimeMillis()));
+                List<ActionTask> waitingTasks = new ArrayList<>();
+                ActionTask task;
+                while ((task = readyTasks.poll()) != null) {
+                    //only one task at a time may start actions, the others wait for it in order of their priority.
+                    //the task also takes an action slot, so it doesn't overfill the queue shared with other bots
+                    if (task.needsActionQueue() && actionQueueOwner != task) {
+                        if (actionQueueOwner != null || !WorldSnapshot.get().isIdle() || ActionSlots.acquire(1, ACTION_SLOT_TTL) == 0) {
+                            waitingTasks.add(task);
                             continue;
                         }
-                        successfullLocking = false;
-                        counter = 0;
-                        while (lockpicking && !successfullLocking && counter++ < 50) {
-                            if (verbose) Utils.consolePrint("successfullLocking lockingcounter=" + counter);
-                            Mod.hud.getWorld().getServerConnection().sendAction(padlockId,
-                                    new long[]{chestId}, new PlayerAction("", (short) 161, PlayerAction.ANYTHING));
-                            sleep(500);
-                        }
-                    }
-                    if (noLock)
-                        noLock = false;
-                    else
-                        lastLockpicking = System.currentTimeMillis();
-                }
-                if (trashCleaning) {
-                    if (Math.abs(lastTrashCleaning - System.currentTimeMillis()) > trashCleaningTimeout) {
-                        lastTrashCleaning = System.currentTimeMillis();
-                        successfullStartTrashCleaning = false;
-                        int counter = 0;
-                        while (trashCleaning && !successfullStartTrashCleaning && counter++ < 30) {
-                            if (verbose) Utils.consolePrint("successfullStartTrashCleaning counter=" + counter);
-                            Mod.hud.sendAction(new PlayerAction("", (short) 954, PlayerAction.ANYTHING), trashBinId);
-                            sleep(1000);
-                        }
-                        successfullStartTrashCleaning = true;
-                    }
-                }
-
-                if (praying) {
-                    if (Math.abs(lastPrayer - System.currentTimeMillis()) > prayingTimeout) {
-                        lastPrayer = System.currentTimeMillis();
-                        successfullStartOfPraying = false;
-                        int counter = 0;
-                        while (praying && !successfullStartOfPraying && counter++ < 50) {
-                            if (verbose) Utils.consolePrint("successfullStartOfPraying counter=" + counter);
-                            Mod.hud.sendAction(PlayerAction.PRAY, altarId);
-                            sleep(1000);
-                        }
-                        successfullStartOfPraying = true;
+                        actionQueueOwner = task;
                     }
-                }
-
-                if (sacrificing) {
-                    if (Math.abs(lastSacrifice - System.currentTimeMillis()) > sacrificeTimeout) {
-                        lastSacrifice = System.currentTimeMillis();
-                        successfullStartOfSacrificing = false;
-                        int counter = 0;
-                        while (sacrificing && !successfullStartOfSacrificing && counter++ < 50) {
-                            if (verbose) Utils.consolePrint("successfullStartOfSacrificing counter=" + counter);
-                            Mod.hud.sendAction(PlayerAction.SACRIFICE, sacrificeAltarId);
-                            sleep(1000);
-                        }
-                        successfullStartOfSacrificing = true;
-                    }
-                }
-
-                if (kindlingBurning) {
-                    if (Math.abs(lastBurning - System.currentTimeMillis()) > kindlingBurningTimeout) {
-                        lastBurning = System.currentTimeMillis();
-                        List<InventoryMetaItem> kindlings = Utils.getInventoryItems("kindling")
-                                .stream()
-                                .filter(item -> item.getRarity() == 0)
-                                .collect(Collectors.toList());
-                        if (kindlings.size() > 1) {
-                            kindlings.sort(Comparator.comparingDouble(InventoryMetaItem::getWeight));
-                            InventoryMetaItem biggestKindling = kindlings.get(kindlings.size() - 1);
-                            kindlings.remove(biggestKindling);
-                            long[] targetIds = new long[kindlings.size()];
-                            for (int i = 0; i < Math.min(kindlings.size(), 64); i++)
-                                targetIds[i] = kindlings.get(i).getId();
-                            Mod.hud.getWorld().getServerConnection().sendAction(
-                                    targetIds[0], targetIds, PlayerAction.COMBINE);
-                            successfullStartOfBurning = false;
-                            int counter = 0;
-                            while (kindlingBurning && !successfullStartOfBurning && counter++ < 50) {
-                                if (verbose) Utils.consolePrint("successfullStartOfBurning counter=" + counter);
-                                Mod.hud.getWorld().getServerConnection().sendAction(
-                                        biggestKindling.getId(), new long[]{forgeId}, new PlayerAction("", (short) 117, PlayerAction.ANYTHING));
-                                sleep(300);
-                            }
-                            successfullStartOfBurning = true;
-                        }
+                    long delay = task.step();
+                    if (actionQueueOwner == task && !task.needsActionQueue()) {
+                        actionQueueOwner = null;
+                        ActionSlots.release(1);
                     }
+                    if (delay <= 0)
+                        readyTasks.add(task);
+                    else
+                        task.scheduledTimeout = timerWheel.schedule(task, System.currentTimeMillis() + delay);
                 }
+                readyTasks.addAll(waitingTasks);
+                sleep(TICK_DURATION);
             }
-            sleep(timeout);
+        } finally {
+            //the requests listen to the chat until they time out otherwise
+            for (ActionTask task : tasks)
+                if (task.request != null)
+                    task.request.cancel();
         }
     }
 
     private void registerEventProcessors() {
-        registerEventProcessor(message -> message.contains("you will start dispelling")
-                        || message.contains("You start to cast ")
-                        || message.contains("you will start casting"),
-                () -> successfullCastStart = true);
-        registerEventProcessor(message -> message.contains("You cast ")
-                        || message.contains("You fail to channel the ")
-                        || message.contains("You must not move "),
-                () -> successfullCasting = true);
-        registerEventProcessor(message -> message.contains("until you can cast Wisdom of Vynora again."),
-                () -> needWaitWov = true);
-        registerEventProcessor(message -> message.contains("you will start drinking"),
-                () -> successfullDrinkingStart = true);
-        registerEventProcessor(message -> message.contains("The water is refreshing and it cools you down")
-                        || message.contains("You are so bloated you cannot bring yourself to drink any thing"),
-                () -> successfullDrinking = successfullDrinkingStart = true);
-        registerEventProcessor(message -> message.contains("You start to pick the lock")
-                        || message.contains("you will start picking lock"),
-                () -> successfullStartOfLockpicking = true);
         registerEventProcessor(message -> message.contains("You fail to pick the lock"),
                 () -> lockpickingResult = 0);
         registerEventProcessor(message -> message.contains("You pick the lock of"),
                 () -> lockpickingResult = 1);
-        registerEventProcessor(message -> message.contains("you will start attaching lock")
-                        || message.contains("You lock the "),
-                () -> successfullLocking = true);
-        registerEventProcessor(message -> message.contains("is not locked."),
-                () -> noLock = true);
-        registerEventProcessor(message -> message.contains("you will start cleaning."),
-                () -> successfullStartTrashCleaning = true);
-        registerEventProcessor(message -> message.contains("You will start praying")
-                        || message.contains("You start to pray")
-                        || message.contains("you will start praying"),
-                () -> successfullStartOfPraying = true);
-        registerEventProcessor(message -> message.contains("you will start burning")
-                        || message.contains("You fuel the"),
-                () -> successfullStartOfBurning = true);
-        registerEventProcessor(message -> message.contains("You start to sacrifice")
-                        || message.contains("you will start sacrificing"),
-                () -> successfullStartOfSacrificing = true);
+    }
+
+    //called from the chat callbacks when the action of the task is confirmed
+    private void wakeUp(ActionTask task) {
+        wokenTasks.add(task);
     }
 
     private void toggleDrinkingByTargetId(String[] input) {
@@ -426,6 +274,7 @@ public class AssistantBot extends BotBase {
             timeout = 100;
         }
         kindlingBurningTimeout = timeout;
+        rescheduleRequested = true;
         Utils.consolePrint("Current kindling burn timeout is " + kindlingBurningTimeout);
     }
 
@@ -451,6 +300,7 @@ public class AssistantBot extends BotBase {
             timeout = 100;
         }
         prayingTimeout = timeout;
+        rescheduleRequested = true;
         Utils.consolePrint("Current prayer timeout is " + prayingTimeout);
     }
 
@@ -476,6 +326,7 @@ public class AssistantBot extends BotBase {
             timeout = 100;
         }
         trashCleaningTimeout = timeout;
+        rescheduleRequested = true;
         Utils.consolePrint("Current trash cleaning timeout is " + trashCleaningTimeout);
     }
 
@@ -501,6 +352,7 @@ public class AssistantBot extends BotBase {
             timeout = 100;
         }
         sacrificeTimeout = timeout;
+        rescheduleRequested = true;
         Utils.consolePrint("Current sacrifice timeout is " + sacrificeTimeout);
     }
 
@@ -526,6 +378,7 @@ public class AssistantBot extends BotBase {
             timeout = 100;
         }
         lockpickingTimeout = timeout;
+        rescheduleRequested = true;
         Utils.consolePrint("Current lockpicking timeout is " + lockpickingTimeout);
     }
 
@@ -756,6 +609,486 @@ public class AssistantBot extends BotBase {
 
     }
 
+    /**
+     * A duty of the bot. Checks its conditions while idle, then sends the action and waits for its confirmation.
+     * The task is woken up by the confirming event, only the start of an action requires the action queue.
+     */
+    private abstract class ActionTask {
+        private final String name;
+        private final int priority;
+        private TimerWheel.Timeout<ActionTask> scheduledTimeout;
+        private TaskPhase phase = TaskPhase.IDLE;
+        ActionRequest request;
+
+        ActionTask(String name, int priority) {
+            this.name = name;
+            this.priority = priority;
+        }
+
+        abstract boolean isEnabled();
+
+        /**
+         * @return 0 to start the action or the delay before the next check
+         */
+        abstract long prepare();
+
+        /**
+         * Called once the task got the action queue, before the action is sent
+         */
+        void onStart() {
+        }
+
+        abstract ActionRequest createRequest();
+
+        /**
+         * @return true to stop waiting for the confirmation of the start or for the end of the action
+         */
+        boolean shouldStop() {
+            return false;
+        }
+
+        /**
+         * @param result  the result of the action. {@link ActionRequest.Result#TIMEOUT} if the start or the end wasn't confirmed
+         * @param started true if the start of the action was confirmed
+         */
+        void onCompleted(ActionRequest.Result result, boolean started) {
+        }
+
+        boolean needsActionQueue() {
+            return phase == TaskPhase.STARTING;
+        }
+
+        /**
+         * @return the delay before the next step
+         */
+        long step() {
+            if (!isEnabled()) {
+                if (request != null)
+                    request.cancel();
+                request = null;
+                phase = TaskPhase.IDLE;
+                return timeout();
+            }
+            switch (phase) {
+                case IDLE:
+                    long delay = prepare();
+                    if (delay > 0)
+                        return delay;
+                    phase = TaskPhase.STARTING;
+                    return 0;
+                case STARTING:
+                    if (request == null) {
+                        onStart();
+                        request = createRequest().pausedWhile(AssistantBot.this::isPaused);
+                        if (verbose) Utils.consolePrint(name + " is started");
+                        request.send().thenRun(() -> wakeUp(this));
+                        request.getFinish().thenRun(() -> wakeUp(this));
+                        return timeout();
+                    }
+                    ActionRequest.Result startResult = request.getStart().getNow(null);
+                    if (startResult == null && !shouldStop())
+                        return timeout();
+                    if (startResult == ActionRequest.Result.STARTED && !request.getFinish().isDone() && !shouldStop()) {
+                        phase = TaskPhase.FINISHING;
+                        return timeout();
+                    }
+                    return complete();
+                case FINISHING:
+                    if (request.getFinish().isDone() || shouldStop())
+                        return complete();
+                    return timeout();
+            }
+            return timeout();
+        }
+
+        private long complete() {
+            ActionRequest.Result startResult = request.getStart().getNow(ActionRequest.Result.TIMEOUT);
+            ActionRequest.Result result = request.getFinish().getNow(startResult);
+            request.cancel();
+            request = null;
+            phase = TaskPhase.IDLE;
+            if (verbose) Utils.consolePrint(name + " is completed with result " + result);
+            onCompleted(result, startResult != ActionRequest.Result.TIMEOUT);
+            return timeout();
+        }
+
+        private long timeout() {
+            return Math.max(TICK_DURATION, AssistantBot.this.timeout);
+        }
+    }
+
+    private class CastingTask extends ActionTask {
+        CastingTask() {
+            super("Casting", 3);
+        }
+
+        @Override
+        boolean isEnabled() {
+            return casting;
+        }
+
+        @Override
+        long prepare() {
+            if (WorldSnapshot.get().getSkillValue("favor") <= spellToCast.favorCap)
+                return timeout;
+            return 0;
+        }
+
+        @Override
+        ActionRequest createRequest() {
+            return createCastRequest(spellToCast.playerAction);
+        }
+
+        @Override
+        boolean shouldStop() {
+            return request.getStart().getNow(null) == null && WorldSnapshot.get().getSkillValue("favor") <= spellToCast.favorCap;
+        }
+    }
+
+    private ActionRequest createCastRequest(PlayerAction spell) {
+        return new ActionRequest(() -> Mod.hud.getWorld().getServerConnection().sendAction(statuetteId, new long[]{bodyId}, spell))
+                .startedOn(message -> message.contains("you will start dispelling")
+                        || message.contains("You start to cast ")
+                        || message.contains("you will start casting"))
+                .finishedOn(message -> message.contains("You cast ")
+                        || message.contains("You fail to channel the ")
+                        || message.contains("You must not move "))
+                .retry(500, 50);
+    }
+
+    private class WovCastingTask extends ActionTask {
+        private static final long WOV_COOLDOWN = 1810000;
+
+        WovCastingTask() {
+            super("Wisdom of Vynora", 4);
+        }
+
+        @Override
+        boolean isEnabled() {
+            return wovCasting && !casting;
+        }
+
+        @Override
+        long prepare() {
+            long remaining = WOV_COOLDOWN - Math.abs(lastWOV - System.currentTimeMillis());
+            if (remaining >= 0)
+                return remaining + 1;
+            if (WorldSnapshot.get().getSkillValue("favor") <= 30)
+                return timeout;
+            return 0;
+        }
+
+        @Override
+        ActionRequest createRequest() {
+            return createCastRequest(PlayerAction.WISDOM_OF_VYNORA)
+                    .failedOn(message -> message.contains("until you can cast Wisdom of Vynora again."));
+        }
+
+        @Override
+        void onCompleted(ActionRequest.Result result, boolean started) {
+            if (result == ActionRequest.Result.FAILED)
+                lastWOV = lastWOV + 20000;
+            else
+                lastWOV = System.currentTimeMillis();
+        }
+    }
+
+    private class DrinkingTask extends ActionTask {
+        DrinkingTask() {
+            super("Drinking", 0);
+        }
+
+        @Override
+        boolean isEnabled() {
+            return drinking;
+        }
+
+        @Override
+        long prepare() {
+            if (WorldSnapshot.get().thirst <= 0.1)
+                return timeout;
+            return 0;
+        }
+
+        @Override
+        ActionRequest createRequest() {
+            return new ActionRequest(() -> Mod.hud.sendAction(new PlayerAction("", (short) 183, PlayerAction.ANYTHING), waterId))
+                    .startedOn(message -> message.contains("you will start drinking"))
+                    .finishedOn(message -> message.contains("The water is refreshing and it cools you down")
+                            || message.contains("You are so bloated you cannot bring yourself to drink any thing"))
+                    .retry(500, 50);
+        }
+    }
+
+    /**
+     * Picks the lock and locks the chest back with a padlock
+     */
+    private class LockpickingTask extends ActionTask {
+        private boolean locking;
+        private boolean noLock;
+        private long lockpickId;
+        private long padlockId;
+
+        LockpickingTask() {
+            super("Lockpicking", 6);
+        }
+
+        @Override
+        boolean isEnabled() {
+            return lockpicking;
+        }
+
+        @Override
+        long prepare() {
+            if (locking) {
+                InventoryMetaItem padlock = Utils.getInventoryItem("padlock");
+                if (padlock == null) {
+                    locking = false;
+                    return 1000;
+                }
+                padlockId = padlock.getId();
+                return 0;
+            }
+            long remaining = lockpickingTimeout - Math.abs(lastLockpicking - System.currentTimeMillis());
+            if (remaining >= 0)
+                return remaining + 1;
+            InventoryMetaItem lockpick = Utils.getInventoryItem("lock picks");
+            if (lockpick == null) {
+                Utils.consolePrint("No lockpicks in inventory! Turning lockpicking off");
+                lockpicking = false;
+                return timeout;
+            }
+            lockpickId = lockpick.getId();
+            lockpickingResult = -1;
+            return 0;
+        }
+
+        @Override
+        ActionRequest createRequest() {
+            if (locking)
+                return new ActionRequest(() -> Mod.hud.getWorld().getServerConnection().sendAction(padlockId,
+                        new long[]{chestId}, new PlayerAction("", (short) 161, PlayerAction.ANYTHING)))
+                        .startedOn(message -> message.contains("you will start attaching lock")
+                                || message.contains("You lock the "))
+                        .retry(500, 50);
+            return new ActionRequest(() -> Mod.hud.getWorld().getServerConnection().sendAction(lockpickId,
+                    new long[]{chestId}, new PlayerAction("", (short) 101, PlayerAction.ANYTHING)))
+                    .startedOn(message -> message.contains("You start to pick the lock")
+                            || message.contains("you will start picking lock"))
+                    .finishedOn(message -> message.contains("You fail to pick the lock")
+                            || message.contains("You pick the lock of"))
+                    .failedOn(message -> message.contains("is not locked."))
+                    .retry(500, 50);
+        }
+
+        @Override
+        void onCompleted(ActionRequest.Result result, boolean started) {
+            if (locking) {
+                locking = false;
+                if (noLock)
+                    noLock = false;
+                else
+                    lastLockpicking = System.currentTimeMillis();
+            } else if (result == ActionRequest.Result.FAILED || lockpickingResult > 0) {
+                noLock = result == ActionRequest.Result.FAILED;
+                locking = true;
+            } else if (started)
+                lastLockpicking = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Sends the action to the target periodically
+     */
+    private abstract class PeriodicTask extends ActionTask {
+        PeriodicTask(String name, int priority) {
+            super(name, priority);
+        }
+
+        abstract long getLastTime();
+
+        abstract void setLastTime(long time);
+
+        abstract long getPeriod();
+
+        @Override
+        long prepare() {
+            long remaining = getPeriod() - Math.abs(getLastTime() - System.currentTimeMillis());
+            if (remaining >= 0)
+                return remaining + 1;
+            setLastTime(System.currentTimeMillis());
+            return 0;
+        }
+    }
+
+    private class TrashCleaningTask extends PeriodicTask {
+        TrashCleaningTask() {
+            super("Trash cleaning", 7);
+        }
+
+        @Override
+        boolean isEnabled() {
+            return trashCleaning;
+        }
+
+        @Override
+        long getLastTime() {
+            return lastTrashCleaning;
+        }
+
+        @Override
+        void setLastTime(long time) {
+            lastTrashCleaning = time;
+        }
+
+        @Override
+        long getPeriod() {
+            return trashCleaningTimeout;
+        }
+
+        @Override
+        ActionRequest createRequest() {
+            return new ActionRequest(() -> Mod.hud.sendAction(new PlayerAction("", (short) 954, PlayerAction.ANYTHING), trashBinId))
+                    .startedOn(message -> message.contains("you will start cleaning."))
+                    .retry(1000, 30);
+        }
+    }
+
+    private class PrayingTask extends PeriodicTask {
+        PrayingTask() {
+            super("Praying", 1);
+        }
+
+        @Override
+        boolean isEnabled() {
+            return praying;
+        }
+
+        @Override
+        long getLastTime() {
+            return lastPrayer;
+        }
+
+        @Override
+        void setLastTime(long time) {
+            lastPrayer = time;
+        }
+
+        @Override
+        long getPeriod() {
+            return prayingTimeout;
+        }
+
+        @Override
+        ActionRequest createRequest() {
+            return new ActionRequest(() -> Mod.hud.sendAction(PlayerAction.PRAY, altarId))
+                    .startedOn(message -> message.contains("You will start praying")
+                            || message.contains("You start to pray")
+                            || message.contains("you will start praying"))
+                    .retry(1000, 50);
+        }
+    }
+
+    private class SacrificingTask extends PeriodicTask {
+        SacrificingTask() {
+            super("Sacrificing", 2);
+        }
+
+        @Override
+        boolean isEnabled() {
+            return sacrificing;
+        }
+
+        @Override
+        long getLastTime() {
+            return lastSacrifice;
+        }
+
+        @Override
+        void setLastTime(long time) {
+            lastSacrifice = time;
+        }
+
+        @Override
+        long getPeriod() {
+            return sacrificeTimeout;
+        }
+
+        @Override
+        ActionRequest createRequest() {
+            return new ActionRequest(() -> Mod.hud.sendAction(PlayerAction.SACRIFICE, sacrificeAltarId))
+                    .startedOn(message -> message.contains("You start to sacrifice")
+                            || message.contains("you will start sacrificing"))
+                    .retry(1000, 50);
+        }
+    }
+
+    private class KindlingBurningTask extends PeriodicTask {
+        private InventoryMetaItem biggestKindling;
+        private List<InventoryMetaItem> kindlings;
+
+        KindlingBurningTask() {
+            super("Kindling burning", 5);
+        }
+
+        @Override
+        boolean isEnabled() {
+            return kindlingBurning;
+        }
+
+        @Override
+        long getLastTime() {
+            return lastBurning;
+        }
+
+        @Override
+        void setLastTime(long time) {
+            lastBurning = time;
+        }
+
+        @Override
+        long getPeriod() {
+            return kindlingBurningTimeout;
+        }
+
+        @Override
+        long prepare() {
+            long delay = super.prepare();
+            if (delay > 0)
+                return delay;
+            kindlings = ItemClassifier.filter(Utils.getSelectedItems(true, true), ItemClassifier.Category.KINDLING)
+                    .stream()
+                    .filter(item -> item.getRarity() == 0)
+                    .collect(Collectors.toList());
+            if (kindlings.size() <= 1)
+                return kindlingBurningTimeout;
+            kindlings.sort(Comparator.comparingDouble(InventoryMetaItem::getWeight));
+            biggestKindling = kindlings.remove(kindlings.size() - 1);
+            return 0;
+        }
+
+        @Override
+        void onStart() {
+            CombinePlanner.combine(kindlings);
+        }
+
+        @Override
+        ActionRequest createRequest() {
+            long kindlingId = biggestKindling.getId();
+            return new ActionRequest(() -> Mod.hud.getWorld().getServerConnection().sendAction(
+                    kindlingId, new long[]{forgeId}, new PlayerAction("", (short) 117, PlayerAction.ANYTHING)))
+                    .startedOn(message -> message.contains("you will start burning")
+                            || message.contains("You fuel the"))
+                    .retry(300, 50);
+        }
+    }
+
+    private enum TaskPhase {
+        IDLE,
+        STARTING,
+        FINISHING
+    }
+
     private enum InputKey implements BotBase.InputKey {
         w("Toggle automatic drinking of the liquid the user pointing at", ""),
         wid("Toggle automatic drinking of liquid with provided id", "id"),
@@ -1,6 +1,5 @@
 package net.ildar.wurm.bot;
 
-import com.wurmonline.shared.constants.PlayerAction;
 import net.ildar.wurm.*;
 
 import java.util.*;
@@ -28,7 +27,19 @@ public abstract class BotBase extends Thread {
      * Store all registered message processors here to unregister them on bot deactivation to prevent memory leaks
      */
     private final List<Chat.MessageProcessor> registeredMessageProcessors = new ArrayList<>();
-    private boolean paused = false;
+    /**
+     * Inventory listeners are removed on bot deactivation too
+     */
+    private final List<InventoryTracker.Listener> registeredInventoryListeners = new ArrayList<>();
+    /**
+     * Container windows opened by the bot. Created on first use and closed on bot deactivation
+     */
+    private ContainerWindowManager containerWindows;
+    private volatile boolean paused = false;
+    //the time until the bot is held by the pipeline, 0 if it isn't held
+    private volatile long holdUntil;
+    //the thread monitor is used by join(), so the paused bot waits on its own lock
+    private final Object pauseLock = new Object();
 
     public BotBase() {
         //register standard input handlers
@@ -36,6 +47,7 @@ public abstract class BotBase extends Thread {
         registerInputHandler(InputKeyBase.off, inputs -> deactivate());
         registerInputHandler(InputKeyBase.info, this::handleInfoCommand);
         registerInputHandler(InputKeyBase.pause, inputs -> togglePause());
+        registerInputHandler(InputKeyBase.slots, this::handleSlotsWeightChange);
     }
 
     public static BotRegistration getRegistration() {
@@ -55,18 +67,56 @@ public abstract class BotBase extends Thread {
             Utils.consolePrint(e.toString());
         }
         unregisterMessageProcessors();
+        registeredInventoryListeners.forEach(InventoryTracker::removeListener);
+        ItemReservations.releaseAll(this);
+        ActionSlots.releaseAll(this);
+        if (containerWindows != null)
+            containerWindows.closeAll();
         BotController.getInstance().onBotInterrupted(getClass());
         Utils.consolePrint(this.getClass().getSimpleName() + " was stopped");
     }
 
+    synchronized ContainerWindowManager getContainerWindows() {
+        if (containerWindows == null)
+            containerWindows = new ContainerWindowManager(10);
+        return containerWindows;
+    }
+
     boolean isActive() {
         return !isInterrupted();
     }
 
-    synchronized void waitOnPause() throws InterruptedException {
-        if (paused) {
-            this.wait();
+    /**
+     * The pause checkpoint. Besides the start of each iteration the bots call it inside their long inner loops,
+     * so the pause takes effect at once and the work goes on from the same place after the resume
+     *
+     * @return true if the bot was paused or held
+     */
+    boolean waitOnPause() throws InterruptedException {
+        if (!paused && holdUntil == 0)
+            return false;
+        synchronized (pauseLock) {
+            while (true) {
+                if (paused) {
+                    pauseLock.wait();
+                    continue;
+                }
+                if (holdUntil == 0)
+                    break;
+                long remaining = holdUntil - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    //only the expired hold is cleared, the hold set during the wait is waited out
+                    holdUntil = 0;
+                    break;
+                }
+                pauseLock.wait(remaining);
+            }
         }
+        return true;
+    }
+
+    public boolean isPaused() {
+        return paused;
     }
 
     private void togglePause() {
@@ -78,19 +128,57 @@ public abstract class BotBase extends Thread {
     }
 
     public void setPaused() {
+        if (paused)
+            return;
+        Utils.stopActions();
+        setPausedWithoutStop();
+    }
+
+    /**
+     * Pauses the bot without stopping the actions of the player. Used when all bots are paused at once
+     * and the actions are stopped once for all of them
+     */
+    public void setPausedWithoutStop() {
+        if (paused)
+            return;
         paused = true;
-        for (int i = 0; i < Utils.getMaxActionNumber(); i++) {
-            Mod.hud.sendAction(PlayerAction.STOP, 0);
-        }
         Utils.consolePrint(getClass().getSimpleName() + " is paused.");
     }
 
-    public synchronized void setResumed() {
-        paused = false;
-        this.notify();
+    public void setResumed() {
+        if (!paused)
+            return;
+        synchronized (pauseLock) {
+            paused = false;
+            pauseLock.notifyAll();
+        }
         Utils.consolePrint(getClass().getSimpleName() + " is resumed.");
     }
 
+    /**
+     * Holds the bot at the pause checkpoint for provided time. Unlike the pause the actions of the player aren't stopped.
+     * Used by {@link Pipeline}
+     */
+    public void hold(long duration) {
+        synchronized (pauseLock) {
+            holdUntil = System.currentTimeMillis() + duration;
+        }
+    }
+
+    public void unhold() {
+        synchronized (pauseLock) {
+            holdUntil = 0;
+            pauseLock.notifyAll();
+        }
+    }
+
+    /**
+     * Reports the state of the bot to the pipeline the bot may be a part of
+     */
+    void signal(Pipeline.Signal signal) {
+        Pipeline.signal(getClass(), signal);
+    }
+
     public void deactivate() {
         Utils.consolePrint("Deactivating " + getClass().getSimpleName());
         BotController.getInstance().onBotInterrupted(getClass());
@@ -169,6 +257,19 @@ public abstract class BotBase extends Thread {
         }
     }
 
+    private void handleSlotsWeightChange(String[] input) {
+        if (input == null || input.length != 1) {
+            printInputKeyUsageString(InputKeyBase.slots);
+            return;
+        }
+        try {
+            ActionSlots.setWeight(this, Integer.parseInt(input[0]));
+            Utils.consolePrint("The action slots weight of " + getClass().getSimpleName() + " is " + ActionSlots.getWeight(this));
+        } catch (NumberFormatException e) {
+            Utils.consolePrint("Wrong weight value!");
+        }
+    }
+
     final void setTimeout(int timeout) {
         if (timeout < 100) {
             Utils.consolePrint("Too small timeout!");
@@ -213,6 +314,16 @@ public abstract class BotBase extends Thread {
         registeredMessageProcessors.forEach(Chat::unregisterMessageProcessor);
     }
 
+    final void registerInventoryListener(InventoryTracker.Listener listener) {
+        registeredInventoryListeners.add(listener);
+        InventoryTracker.addListener(listener);
+    }
+
+    final void unregisterInventoryListener(InventoryTracker.Listener listener) {
+        registeredInventoryListeners.remove(listener);
+        InventoryTracker.removeListener(listener);
+    }
+
     private enum InputKeyBase implements InputKey {
         t("Set the timeout for bot. The bot will wait for specified time(in milliseconds) after each iteration/update",
                 "timeout(in milliseconds)"),
@@ -221,7 +332,10 @@ public abstract class BotBase extends Thread {
         pause("Pause/resume the bot",
                 ""),
         info("Get information about configuration key",
-                "key");
+                "key"),
+        slots("Set the weight of the bot in sharing of the action queue with other running bots. " +
+                "The bigger the weight the more actions the bot may queue",
+                "weight(integer)");
 
         private final String description;
         private final String usage;
@@ -1,16 +1,22 @@
 package net.ildar.wurm.bot;
 
 import net.ildar.wurm.BotRegistration;
+import net.ildar.wurm.BulkTransferTracker;
 import net.ildar.wurm.Mod;
 import net.ildar.wurm.Utils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class BulkItemGetterBot extends BotBase {
-    public static boolean closeBMLWindow;
+    private static final long TRANSFER_CHECK_PERIOD = 1000;
     private final List<SourceItem> sources = new ArrayList<>();
     private final List<Long> targets = new ArrayList<>();
+    private int maxTransfers = 5;
 
     public BulkItemGetterBot() {
         registerInputHandler(BulkItemGetterBot.InputKey.as, input -> addSource());
@@ -18,6 +24,7 @@ public class BulkItemGetterBot extends BotBase {
         registerInputHandler(BulkItemGetterBot.InputKey.asid, this::addSourceById);
         registerInputHandler(BulkItemGetterBot.InputKey.atid, this::addTargetById);
         registerInputHandler(BulkItemGetterBot.InputKey.ssxy, input -> addFixedPointSource());
+        registerInputHandler(BulkItemGetterBot.InputKey.n, this::setMaxTransfers);
     }
 
     public static BotRegistration getRegistration() {
@@ -29,35 +36,72 @@ public class BulkItemGetterBot extends BotBase {
 
     @Override
     public void work() throws Exception {
-        closeBMLWindow = false;
         setTimeout(15000);
         registerEventProcessor(message -> message.contains("That item is already busy"),
-                () -> closeBMLWindow = false);
-        while (isActive()) {
-            waitOnPause();
-            if (sources.size() > 0 && targets.size() > 0) {
-                int moves = Math.min(sources.size(), targets.size());
-                for (int i = 0; i < moves; i++) {
-                    SourceItem sourceItem = sources.get(i);
-                    if (sourceItem.fixedPoint) {
-                        long[] items = Mod.hud.getCommandTargetsFrom(sourceItem.x, sourceItem.y);
-                        if (items != null && items.length > 0) {
-                            sourceItem.id = items[0];
-                        } else {
-                            Utils.consolePrint("Can't get an item from point (" + sourceItem.x + ", " + sourceItem.y + ")");
-                            continue;
+                () -> BulkTransferTracker.failOldest(this));
+        List<CompletableFuture<Boolean>> transfers = new ArrayList<>();
+        try {
+            while (isActive()) {
+                waitOnPause();
+                if (sources.size() > 0 && targets.size() > 0) {
+                    int moves = Math.min(sources.size(), targets.size());
+                    for (int i = 0; i < moves; i++) {
+                        waitOnPause();
+                        SourceItem sourceItem = sources.get(i);
+                        if (sourceItem.fixedPoint) {
+                            long[] items = Mod.hud.getCommandTargetsFrom(sourceItem.x, sourceItem.y);
+                            if (items != null && items.length > 0) {
+                                sourceItem.id = items[0];
+                            } else {
+                                Utils.consolePrint("Can't get an item from point (" + sourceItem.x + ", " + sourceItem.y + ")");
+                                continue;
+                            }
                         }
+                        waitForTransfers(transfers, maxTransfers - 1);
+                        transfers.add(BulkTransferTracker.transfer(sourceItem.id, targets.get(i)));
                     }
-                    closeBMLWindow = true;
-                    //Utils.consolePrint(i + " - moving " + sources.get(i) + " to " + targets.get(i));
-                    Mod.hud.getWorld().getServerConnection().sendMoveSomeItems(targets.get(i), new long[]{sourceItem.id});
-                    int counter = 0;
-                    while (closeBMLWindow && counter++ < 50)
-                        sleep(100);
-                }
-                sleep(timeout);
-            } else
-                sleep(1000);
+                    waitForTransfers(transfers, 0);
+                    sleep(timeout);
+                } else
+                    sleep(1000);
+            }
+        } finally {
+            BulkTransferTracker.cancelAll(this);
+        }
+    }
+
+    /**
+     * Waits until no more than provided number of transfers are in flight
+     */
+    private void waitForTransfers(List<CompletableFuture<Boolean>> transfers, int maxLeft) throws InterruptedException {
+        while (true) {
+            transfers.removeIf(CompletableFuture::isDone);
+            if (transfers.size() <= maxLeft)
+                return;
+            try {
+                CompletableFuture.anyOf(transfers.toArray(new CompletableFuture[0])).get(TRANSFER_CHECK_PERIOD, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                BulkTransferTracker.expire();
+            } catch (ExecutionException ignored) {
+            }
+        }
+    }
+
+    private void setMaxTransfers(String[] input) {
+        if (input == null || input.length != 1) {
+            printInputKeyUsageString(BulkItemGetterBot.InputKey.n);
+            return;
+        }
+        try {
+            int maxTransfers = Integer.parseInt(input[0]);
+            if (maxTransfers < 1) {
+                Utils.consolePrint("Too small value!");
+                maxTransfers = 1;
+            }
+            this.maxTransfers = maxTransfers;
+            Utils.consolePrint("Up to " + maxTransfers + " transfers will be in flight at once");
+        } catch (Exception e) {
+            Utils.consolePrint("Wrong value!");
         }
     }
 
@@ -143,6 +187,7 @@ public class BulkItemGetterBot extends BotBase {
         asid("Add the source(item in bulk storage) with provided id", "id"),
         atid("Add the target item with provided id", "id"),
         ssxy("Add source item from fixed point on screen", ""),
+        n("Set the maximum number of transfers in flight at once", "number"),
         ;
         private final String description;
         private final String usage;
@@ -4,11 +4,13 @@ import com.wurmonline.client.comm.ServerConnectionListenerClass;
 import com.wurmonline.client.game.inventory.InventoryMetaItem;
 import com.wurmonline.client.renderer.GroundItemData;
 import com.wurmonline.client.renderer.cell.GroundItemCellRenderable;
-import com.wurmonline.client.renderer.gui.CreationWindow;
 import com.wurmonline.shared.constants.PlayerAction;
+import net.ildar.wurm.ActionSlots;
 import net.ildar.wurm.BotRegistration;
 import net.ildar.wurm.Mod;
+import net.ildar.wurm.ToolSelector;
 import net.ildar.wurm.Utils;
+import net.ildar.wurm.WorldSnapshot;
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 
 import java.util.ConcurrentModificationException;
@@ -39,7 +41,7 @@ public class ChopperBot extends BotBase {
     public void work() throws Exception {
         setStaminaThreshold(0.96f);
         setClicks(Utils.getMaxActionNumber());
-        InventoryMetaItem hatchet = Utils.getInventoryItem("hatchet");
+        InventoryMetaItem hatchet = ToolSelector.findBest("hatchet");
         long hatchetId;
         if (hatchet == null) {
             Utils.consolePrint("You don't have a hatchet!");
@@ -49,21 +51,18 @@ public class ChopperBot extends BotBase {
             Utils.consolePrint(this.getClass().getSimpleName() + " will use " + hatchet.getDisplayName() + " to chop shriveled trees.");
             Utils.consolePrint("QL:" + hatchet.getQuality() + " DMG:" + hatchet.getDamage());
         }
-        CreationWindow creationWindow = Mod.hud.getCreationWindow();
-        Object progressBar = ReflectionUtil.getPrivateField(creationWindow,
-                ReflectionUtil.getField(creationWindow.getClass(), "progressBar"));
         ServerConnectionListenerClass sscc = Mod.hud.getWorld().getServerConnection().getServerConnectionListener();
         while (isActive()) {
             waitOnPause();
-            float stamina = Mod.hud.getWorld().getPlayer().getStamina();
-            float damage = Mod.hud.getWorld().getPlayer().getDamage();
-            float progress = ReflectionUtil.getPrivateField(progressBar,
-                    ReflectionUtil.getField(progressBar.getClass(), "progress"));
+            WorldSnapshot snapshot = WorldSnapshot.get();
+            float stamina = snapshot.stamina;
+            float damage = snapshot.damage;
+            float progress = snapshot.progress;
             if ((stamina + damage) > staminaThreshold && progress == 0f) {
                 Map<Long, GroundItemCellRenderable> groundItems = ReflectionUtil.getPrivateField(sscc,
                         ReflectionUtil.getField(sscc.getClass(), "groundItems"));
-                float x = Mod.hud.getWorld().getPlayerPosX();
-                float y = Mod.hud.getWorld().getPlayerPosY();
+                float x = snapshot.posX;
+                float y = snapshot.posY;
                 boolean didSomething = false;
                 if (groundItems.size() > 0) {
                     try {
@@ -74,7 +73,8 @@ public class ChopperBot extends BotBase {
                             float itemY = groundItemData.getY();
                             if (Math.sqrt(Math.pow(itemX - x, 2) + Math.pow(itemY - y, 2)) <= distance)
                                 if (groundItemData.getName().contains("felled tree")) {
-                                    for (int i = 0; i < clicks; i++)
+                                    int chops = Math.min(clicks, ActionSlots.getShare());
+                                    for (int i = 0; i < chops; i++)
                                         Mod.hud.getWorld().getServerConnection().sendAction(hatchetId, new long[]{groundItemData.getId()}, PlayerAction.CHOP_UP);
                                     didSomething = true;
                                     break;
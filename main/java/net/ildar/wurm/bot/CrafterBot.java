@@ -2,19 +2,25 @@ package net.ildar.wurm.bot;
 
 import com.wurmonline.client.game.inventory.InventoryMetaItem;
 import com.wurmonline.client.renderer.gui.*;
-import com.wurmonline.shared.constants.PlayerAction;
 import net.ildar.wurm.BotRegistration;
+import net.ildar.wurm.CombinePlanner;
+import net.ildar.wurm.InventoryItemList;
 import net.ildar.wurm.Mod;
+import net.ildar.wurm.ToolMaintenance;
 import net.ildar.wurm.Utils;
+import net.ildar.wurm.WorldSnapshot;
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class CrafterBot extends BotBase {
+    //the current job is postponed if no items were created for this time of crafting
+    private static final long JOB_STALL_TIMEOUT = 60000;
     private float staminaThreshold;
     private boolean repairInstrument = true;
     private String targetName;
@@ -32,6 +38,11 @@ public class CrafterBot extends BotBase {
     private boolean withoutActionsInUse;
     private long lastClick;
     private boolean singleSourceItemMode;
+    private final FrameItems targetFrameItems = new FrameItems();
+    private final FrameItems sourceFrameItems = new FrameItems();
+    private final CraftingJobQueue jobQueue = new CraftingJobQueue();
+    private boolean jobMode;
+    private long lastJobProgress;
 
     public CrafterBot() {
         registerInputHandler(CrafterBot.InputKey.r, input -> toggleRepairInstrument());
@@ -49,6 +60,13 @@ public class CrafterBot extends BotBase {
         registerInputHandler(CrafterBot.InputKey.an, this::setActionNumber);
         registerInputHandler(CrafterBot.InputKey.noan, input -> toggleActionNumberChecks());
         registerInputHandler(CrafterBot.InputKey.s1s, input -> toggleSingleSourceItemMode());
+        registerInputHandler(CrafterBot.InputKey.j, input -> toggleJobMode());
+        registerInputHandler(CrafterBot.InputKey.ja, this::addCreateJob);
+        registerInputHandler(CrafterBot.InputKey.jc, this::addCombineJob);
+        registerInputHandler(CrafterBot.InputKey.jl, input -> listJobs());
+        registerInputHandler(CrafterBot.InputKey.jr, this::removeJob);
+
+        jobQueue.load();
     }
 
     public static BotRegistration getRegistration() {
@@ -70,45 +88,59 @@ public class CrafterBot extends BotBase {
         sendCreateAction.setAccessible(true);
         Method requestCreationList = ReflectionUtil.getMethod(creationWindow.getClass(), "requestCreationList");
         requestCreationList.setAccessible(true);
-        Object progressBar = ReflectionUtil.getPrivateField(creationWindow,
-                ReflectionUtil.getField(creationWindow.getClass(), "progressBar"));
         CreationFrame source = ReflectionUtil.getPrivateField(creationWindow,
                 ReflectionUtil.getField(creationWindow.getClass(), "source"));
         CreationFrame target = ReflectionUtil.getPrivateField(creationWindow,
                 ReflectionUtil.getField(creationWindow.getClass(), "target"));
+        Field itemListField = ReflectionUtil.getField(CreationFrame.class, "itemList");
+        Field unfinishedItemListField = ReflectionUtil.getField(creationWindow.getClass(), "unfinishedItemList");
+        Field linesField = null;
+        Field lineItemField = null;
+        Field chanceField = null;
+        Field nameField = null;
         registerEventProcessors();
         while (isActive()) {
-            waitOnPause();
-            float stamina = Mod.hud.getWorld().getPlayer().getStamina();
-            float damage = Mod.hud.getWorld().getPlayer().getDamage();
-            float progress = ReflectionUtil.getPrivateField(progressBar,
-                    ReflectionUtil.getField(progressBar.getClass(), "progress"));
+            //the time of the pause and of the stamina regeneration doesn't count as a stall of the job
+            if (waitOnPause())
+                lastJobProgress = System.currentTimeMillis();
+            WorldSnapshot snapshot = WorldSnapshot.get();
+            float stamina = snapshot.stamina;
+            float damage = snapshot.damage;
+            float progress = snapshot.progress;
+
+            if (jobMode) {
+                if ((stamina + damage) <= staminaThreshold)
+                    lastJobProgress = System.currentTimeMillis();
+                updateJob();
+            }
 
             if (repairInstrument) {
                 @SuppressWarnings("unchecked")
-                List<InventoryMetaItem> sourceItems = new ArrayList(ReflectionUtil.getPrivateField(source,
-                        ReflectionUtil.getField(source.getClass(), "itemList")));
-                if (sourceItems != null && sourceItems.size() > 0 && sourceItems.get(0).getDamage() > 10)
-                    Mod.hud.sendAction(PlayerAction.REPAIR, sourceItems.get(0).getId());
+                List<InventoryMetaItem> sourceItems = new ArrayList(ReflectionUtil.getPrivateField(source, itemListField));
+                if (sourceItems != null && sourceItems.size() > 0)
+                    ToolMaintenance.repair(sourceItems.get(0));
             }
 
             if (craftUnfinishedItemMode) {
-                WurmTreeList<CreationItemTreeLisItem> unfinishedItemList = ReflectionUtil.getPrivateField(creationWindow,
-                        ReflectionUtil.getField(creationWindow.getClass(), "unfinishedItemList"));
+                WurmTreeList<CreationItemTreeLisItem> unfinishedItemList = ReflectionUtil.getPrivateField(creationWindow, unfinishedItemListField);
                 if (unfinishedItemList != null) {
-                    List lines = ReflectionUtil.getPrivateField(unfinishedItemList,
-                            ReflectionUtil.getField(unfinishedItemList.getClass(), "lines"));
+                    if (linesField == null)
+                        linesField = ReflectionUtil.getField(unfinishedItemList.getClass(), "lines");
+                    List lines = ReflectionUtil.getPrivateField(unfinishedItemList, linesField);
                     if (lines != null && lines.size() > 0) {
                         targetName = null;
                         //noinspection ForLoopReplaceableByForEach
                         for (int i = 0; i < lines.size(); i++) {
-                            CreationItemTreeLisItem listItem = ReflectionUtil.getPrivateField(lines.get(i),
-                                    ReflectionUtil.getField(lines.get(i).getClass(), "item"));
-                            String chance = ReflectionUtil.getPrivateField(listItem,
-                                    ReflectionUtil.getField(listItem.getClass(), "chance"));
+                            if (lineItemField == null)
+                                lineItemField = ReflectionUtil.getField(lines.get(i).getClass(), "item");
+                            CreationItemTreeLisItem listItem = ReflectionUtil.getPrivateField(lines.get(i), lineItemField);
+                            if (chanceField == null) {
+                                chanceField = ReflectionUtil.getField(listItem.getClass(), "chance");
+                                nameField = ReflectionUtil.getField(listItem.getClass(), "name");
+                            }
+                            String chance = ReflectionUtil.getPrivateField(listItem, chanceField);
                             if (chance != null && !chance.equals("") && !chance.contains("%")) {
-                                targetName = ReflectionUtil.getPrivateField(listItem,
-                                        ReflectionUtil.getField(listItem.getClass(), "name"));
+                                targetName = ReflectionUtil.getPrivateField(listItem, nameField);
                                 break;
                             }
                         }
@@ -117,69 +149,45 @@ public class CrafterBot extends BotBase {
                     }
                 }
             }
-            if (targetName != null && targetName.length() > 0) {
-                List<InventoryMetaItem> targetItems = Utils.getInventoryItems(targetName).stream().filter(item -> item.getBaseName().equals(targetName)).collect(Collectors.toList());
-                if (!noSort)
-                    targetItems.sort(weightComparator);
-                ReflectionUtil.setPrivateField(target,
-                        ReflectionUtil.getField(target.getClass(), "itemList"), targetItems);
-                if (targetItems.size() > 0)
-                    target.setTexture(targetItems.get(0));
-            }
-            if (sourceName != null && sourceName.length() > 0) {
-                List<InventoryMetaItem> sourceItems = Utils.getInventoryItems(sourceName).stream().filter(item -> item.getBaseName().equals(sourceName)).collect(Collectors.toList());
-                if (!noSort)
-                    sourceItems.sort(weightComparator);
-                if (singleSourceItemMode && sourceItems != null && sourceItems.size() > 0) {
-                    List<InventoryMetaItem> singleSourceItemList = new ArrayList<>();
-                    singleSourceItemList.add(sourceItems.get(0));
-                    ReflectionUtil.setPrivateField(source,
-                            ReflectionUtil.getField(source.getClass(), "itemList"), singleSourceItemList);
-                } else {
-                    ReflectionUtil.setPrivateField(source,
-                            ReflectionUtil.getField(source.getClass(), "itemList"), sourceItems);
-                }
-                if (sourceItems.size() > 0)
-                    source.setTexture(sourceItems.get(0));
-            }
+            //the frames are written only when the items in the inventory were changed or the frame contents were replaced
+            if (targetName != null && targetName.length() > 0)
+                targetFrameItems.write(target, itemListField, targetName, false);
+            if (sourceName != null && sourceName.length() > 0)
+                sourceFrameItems.write(source, itemListField, sourceName, singleSourceItemMode);
 
             if (targetX != 0 && targetY != 0) {
                 List<InventoryMetaItem> items = Utils.getInventoryItemsAtPoint(targetX, targetY);
                 if (items != null && items.size() > 0)
-                    ReflectionUtil.setPrivateField(target,
-                            ReflectionUtil.getField(target.getClass(), "itemList"), items);
+                    ReflectionUtil.setPrivateField(target, itemListField, items);
             }
 
             if (sourceX != 0 && sourceY != 0) {
                 List<InventoryMetaItem> items = Utils.getInventoryItemsAtPoint(sourceX, sourceY);
                 if (items != null && items.size() > 0)
-                    ReflectionUtil.setPrivateField(source,
-                            ReflectionUtil.getField(source.getClass(), "itemList"), items);
+                    ReflectionUtil.setPrivateField(source, itemListField, items);
             }
 
             if (combineTargets && (Math.abs(lastTargetCombineTime - System.currentTimeMillis()) > combineTimeout)) {
                 lastTargetCombineTime = System.currentTimeMillis();
-                List<InventoryMetaItem> targetItems = ReflectionUtil.getPrivateField(target,
-                        ReflectionUtil.getField(target.getClass(), "itemList"));
+                List<InventoryMetaItem> targetItems = ReflectionUtil.getPrivateField(target, itemListField);
                 if (targetItems != null && targetItems.size() > 1) {
-                    long[] targets = Utils.getItemIds(targetItems);
-                    creationWindow.sendCombineAction(targets[0], targets, target);
+                    for (long[] targets : CombinePlanner.plan(targetItems, 0))
+                        creationWindow.sendCombineAction(targets[0], targets, target);
                     requestCreationList.invoke(creationWindow);
                 }
             }
 
             if (combineSources && (Math.abs(lastSourceCombineTime - System.currentTimeMillis()) > combineTimeout)) {
                 lastSourceCombineTime = System.currentTimeMillis();
-                List<InventoryMetaItem> sourceItems = ReflectionUtil.getPrivateField(source,
-                        ReflectionUtil.getField(target.getClass(), "itemList"));
+                List<InventoryMetaItem> sourceItems = ReflectionUtil.getPrivateField(source, itemListField);
                 if (sourceItems != null && sourceItems.size() > 1) {
-                    long[] sources = Utils.getItemIds(sourceItems);
-                    creationWindow.sendCombineAction(sources[0], sources, source);
+                    for (long[] sources : CombinePlanner.plan(sourceItems, 0))
+                        creationWindow.sendCombineAction(sources[0], sources, source);
                     requestCreationList.invoke(creationWindow);
                 }
             }
 
-            if (source != null && target != null && (stamina + damage) > staminaThreshold && (creationWindow.getActionInUse() == 0 || withoutActionsInUse) && progress == 0f) {
+            if (source != null && target != null && (stamina + damage) > staminaThreshold && (snapshot.actionInUse == 0 || withoutActionsInUse) && progress == 0f) {
                 sendCreateAction.invoke(creationWindow);
             }
             if (source != null && target != null
@@ -199,6 +207,129 @@ public class CrafterBot extends BotBase {
                 || message.contains("you will start creating")
                 || message.contains("You attach")
                 || message.contains("you will start continuing"), () -> lastClick = System.currentTimeMillis());
+        registerEventProcessor(message -> message.contains("You create"), this::onItemCreated);
+    }
+
+    private void onItemCreated() {
+        if (!jobMode)
+            return;
+        lastJobProgress = System.currentTimeMillis();
+        CraftingJobQueue.Job job = jobQueue.onItemCreated();
+        if (job != null)
+            Utils.consolePrint("The job \"" + job + "\" is done");
+    }
+
+    /**
+     * Sets the source and the target of the current job or performs the combine job
+     */
+    private void updateJob() {
+        CraftingJobQueue.Job job = jobQueue.getCurrent();
+        if (job == null) {
+            jobMode = false;
+            sourceName = targetName = null;
+            Utils.consolePrint("All crafting jobs are done");
+            return;
+        }
+        if (job.type == CraftingJobQueue.JobType.COMBINE) {
+            List<InventoryMetaItem> items = new ArrayList<>();
+            for (InventoryMetaItem item : Utils.getInventoryItems(job.sourceName))
+                if (item.getBaseName().equals(job.sourceName))
+                    items.add(item);
+            int actions = CombinePlanner.combine(items);
+            Utils.consolePrint("The job \"" + job + "\" is done with " + actions + " combine actions");
+            jobQueue.completeCurrent();
+            return;
+        }
+        if (!job.sourceName.equals(sourceName) || !job.targetName.equals(targetName)) {
+            sourceName = job.sourceName;
+            targetName = job.targetName;
+            lastJobProgress = System.currentTimeMillis();
+            Utils.consolePrint("Starting the job \"" + job + "\"");
+        } else if (Math.abs(System.currentTimeMillis() - lastJobProgress) > JOB_STALL_TIMEOUT) {
+            lastJobProgress = System.currentTimeMillis();
+            if (jobQueue.postponeCurrent())
+                Utils.consolePrint("Nothing was created for the job \"" + job + "\" for too long. It was moved to the end of the queue");
+            else {
+                jobMode = false;
+                sourceName = targetName = null;
+                Utils.consolePrint("Nothing was created for the job \"" + job + "\" for too long. The job mode is off");
+            }
+        }
+    }
+
+    private void toggleJobMode() {
+        if (jobMode) {
+            jobMode = false;
+            Utils.consolePrint("The job mode is off");
+            return;
+        }
+        if (jobQueue.getCurrent() == null) {
+            Utils.consolePrint("Add some jobs first!");
+            return;
+        }
+        craftUnfinishedItemMode = false;
+        targetX = targetY = sourceX = sourceY = 0;
+        sourceName = targetName = null;
+        jobMode = true;
+        Utils.consolePrint("The job mode is on");
+    }
+
+    private void addCreateJob(String[] input) {
+        if (input == null || input.length < 2) {
+            printInputKeyUsageString(CrafterBot.InputKey.ja);
+            return;
+        }
+        int count;
+        try {
+            count = Integer.parseInt(input[0]);
+        } catch (NumberFormatException e) {
+            Utils.consolePrint("Wrong count value!");
+            return;
+        }
+        String[] names = String.join(" ", Arrays.copyOfRange(input, 1, input.length)).split("\\|");
+        if (count <= 0 || names.length != 2 || names[0].trim().isEmpty() || names[1].trim().isEmpty()) {
+            printInputKeyUsageString(CrafterBot.InputKey.ja);
+            return;
+        }
+        CraftingJobQueue.Job job = CraftingJobQueue.Job.create(names[0].trim(), names[1].trim(), count);
+        jobQueue.add(job);
+        Utils.consolePrint("New job - " + job);
+    }
+
+    private void addCombineJob(String[] input) {
+        if (input == null || input.length == 0) {
+            printInputKeyUsageString(CrafterBot.InputKey.jc);
+            return;
+        }
+        CraftingJobQueue.Job job = CraftingJobQueue.Job.combine(String.join(" ", input));
+        jobQueue.add(job);
+        Utils.consolePrint("New job - " + job);
+    }
+
+    private void listJobs() {
+        List<CraftingJobQueue.Job> jobs = jobQueue.getJobs();
+        if (jobs.size() == 0) {
+            Utils.consolePrint("The job queue is empty");
+            return;
+        }
+        for (int i = 0; i < jobs.size(); i++)
+            Utils.consolePrint(i + ") " + jobs.get(i));
+    }
+
+    private void removeJob(String[] input) {
+        if (input == null || input.length == 0) {
+            jobQueue.clear();
+            Utils.consolePrint("The job queue was cleared");
+            return;
+        }
+        try {
+            if (jobQueue.remove(Integer.parseInt(input[0])))
+                Utils.consolePrint("The job was removed");
+            else
+                Utils.consolePrint("No job with such index");
+        } catch (NumberFormatException e) {
+            printInputKeyUsageString(CrafterBot.InputKey.jr);
+        }
     }
 
     private void toggleActionNumberChecks() {
@@ -394,6 +525,47 @@ public class CrafterBot extends BotBase {
         Utils.consolePrint("The source was set to X - " + sourceX + " Y - " + sourceY);
     }
 
+    /**
+     * Inventory items with the name set for a slot of the crafting window
+     */
+    private class FrameItems {
+        private String itemName;
+        private boolean sorted;
+        private InventoryItemList itemList;
+        private int writtenVersion;
+        private List<InventoryMetaItem> writtenList;
+        private boolean writtenSingleItem;
+
+        /**
+         * Puts the items to the slot if they changed since the last write or the slot was refilled by someone else
+         */
+        void write(CreationFrame frame, Field itemListField, String itemName, boolean singleItem) throws IllegalAccessException {
+            if (itemList == null || !itemName.equals(this.itemName) || sorted == noSort) {
+                if (itemList != null)
+                    unregisterInventoryListener(itemList);
+                this.itemName = itemName;
+                sorted = !noSort;
+                itemList = InventoryItemList.ofPlayerInventory(item -> item.getBaseName().equals(itemName),
+                        sorted ? weightComparator : null);
+                registerInventoryListener(itemList);
+                writtenVersion = -1;
+            }
+            //the first access loads the list and changes the version
+            List<InventoryMetaItem> items = itemList.getItems();
+            int version = itemList.getVersion();
+            List<InventoryMetaItem> frameList = ReflectionUtil.getPrivateField(frame, itemListField);
+            if (version == writtenVersion && frameList == writtenList && singleItem == writtenSingleItem)
+                return;
+            List<InventoryMetaItem> newList = new ArrayList<>(singleItem && items.size() > 0 ? items.subList(0, 1) : items);
+            ReflectionUtil.setPrivateField(frame, itemListField, newList);
+            if (items.size() > 0)
+                frame.setTexture(items.get(0));
+            writtenVersion = version;
+            writtenList = newList;
+            writtenSingleItem = singleItem;
+        }
+    }
+
     private enum InputKey implements BotBase.InputKey {
         r("Toggle the source item repairing(on the left side of crafting window). " +
                 "Usually it is an instrument. When the source item gets 10% damage player will repair it automatically", ""),
@@ -414,7 +586,13 @@ public class CrafterBot extends BotBase {
         an("Set an action number. The number of crafting operations the player will do on each click on continue/create button", "number"),
         noan("Toggles the check for action queue state before the start of each crafting operation. " +
                 "By default " + CrafterBot.class.getSimpleName() + " will check action queue and start crafting operations only when it is empty", ""),
-        s1s("Toggles the setting of single item to source slot of crafting window", "");
+        s1s("Toggles the setting of single item to source slot of crafting window", ""),
+        j("Toggle the job mode. Jobs from the queue are done one after another. The queue is saved to the game folder", ""),
+        ja("Add a job to create provided number of items with given source and target items. " +
+                "The recipe selected in crafting window for these items is used", "count source_name|target_name"),
+        jc("Add a job to combine all items with provided name in your inventory", "item_name"),
+        jl("List the jobs in the queue", ""),
+        jr("Remove the job with provided index from the queue. Clears the queue if no index provided", "[index]");
 
         private final String description;
         private final String usage;
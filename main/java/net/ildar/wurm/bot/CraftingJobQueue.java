@@ -0,0 +1,194 @@
+package net.ildar.wurm.bot;
+
+import net.ildar.wurm.Utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The queue of crafting jobs for {@link CrafterBot}. Stored in a file in the game directory,
+ * so the queue survives the restart of the client.
+ * The changes are written in the background, several changes in a row are written at once.
+ */
+class CraftingJobQueue {
+    private static final String FILE_NAME = "crafterJobs.txt";
+    private static final String SEPARATOR = "|";
+    private static final long SAVE_DELAY = 1000;
+    private static final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Crafting job writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<Job> jobs = new ArrayList<>();
+    private boolean saveScheduled;
+
+    synchronized void load() {
+        jobs.clear();
+        File file = new File(FILE_NAME);
+        if (!file.exists())
+            return;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty())
+                    continue;
+                Job job = Job.parse(line);
+                if (job != null)
+                    jobs.add(job);
+                else
+                    Utils.consolePrint("Skipping the wrong crafting job line - " + line);
+            }
+        } catch (IOException e) {
+            Utils.consolePrint("Can't load the crafting jobs - " + e.getMessage());
+        }
+    }
+
+    //called on the game thread from the chat callbacks too, so the file is not written here
+    private void save() {
+        if (saveScheduled)
+            return;
+        saveScheduled = true;
+        writer.schedule(this::write, SAVE_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    private void write() {
+        List<String> lines = new ArrayList<>();
+        synchronized (this) {
+            saveScheduled = false;
+            for (Job job : jobs)
+                lines.add(job.serialize());
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(FILE_NAME), StandardCharsets.UTF_8)) {
+            for (String line : lines)
+                writer.write(line + System.lineSeparator());
+        } catch (IOException e) {
+            Utils.consolePrint("Can't save the crafting jobs - " + e.getMessage());
+        }
+    }
+
+    synchronized void add(Job job) {
+        jobs.add(job);
+        save();
+    }
+
+    synchronized boolean remove(int index) {
+        if (index < 0 || index >= jobs.size())
+            return false;
+        jobs.remove(index);
+        save();
+        return true;
+    }
+
+    synchronized void clear() {
+        jobs.clear();
+        save();
+    }
+
+    synchronized List<Job> getJobs() {
+        return new ArrayList<>(jobs);
+    }
+
+    /**
+     * @return the first job in the queue or null
+     */
+    synchronized Job getCurrent() {
+        return jobs.isEmpty() ? null : jobs.get(0);
+    }
+
+    synchronized void completeCurrent() {
+        if (!jobs.isEmpty()) {
+            jobs.remove(0);
+            save();
+        }
+    }
+
+    /**
+     * Moves the current job to the end of the queue
+     *
+     * @return false if there are no other jobs
+     */
+    synchronized boolean postponeCurrent() {
+        if (jobs.size() < 2)
+            return false;
+        jobs.add(jobs.remove(0));
+        save();
+        return true;
+    }
+
+    /**
+     * Accounts one created item to the current job
+     *
+     * @return the current job if it was completed by this item, null otherwise
+     */
+    synchronized Job onItemCreated() {
+        Job job = getCurrent();
+        if (job == null || job.type != JobType.CREATE)
+            return null;
+        job.created++;
+        if (job.created >= job.count) {
+            jobs.remove(0);
+            save();
+            return job;
+        }
+        save();
+        return null;
+    }
+
+    enum JobType {
+        CREATE,
+        COMBINE
+    }
+
+    static class Job {
+        final JobType type;
+        final String sourceName;
+        final String targetName;
+        final int count;
+        int created;
+
+        private Job(JobType type, String sourceName, String targetName, int count) {
+            this.type = type;
+            this.sourceName = sourceName;
+            this.targetName = targetName;
+            this.count = count;
+        }
+
+        static Job create(String sourceName, String targetName, int count) {
+            return new Job(JobType.CREATE, sourceName, targetName, count);
+        }
+
+        static Job combine(String itemName) {
+            return new Job(JobType.COMBINE, itemName, "", 0);
+        }
+
+        private String serialize() {
+            return type.name() + SEPARATOR + count + SEPARATOR + created + SEPARATOR + sourceName + SEPARATOR + targetName;
+        }
+
+        private static Job parse(String line) {
+            String[] parts = line.split("\\" + SEPARATOR, 5);
+            if (parts.length != 5)
+                return null;
+            try {
+                Job job = new Job(JobType.valueOf(parts[0]), parts[3], parts[4], Integer.parseInt(parts[1]));
+                job.created = Integer.parseInt(parts[2]);
+                return job;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            if (type == JobType.COMBINE)
+                return "combine " + sourceName;
+            return "create " + count + " (" + created + " done) with " + sourceName + " on " + targetName;
+        }
+    }
+}
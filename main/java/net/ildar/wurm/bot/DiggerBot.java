@@ -3,13 +3,16 @@ package net.ildar.wurm.bot;
 import com.wurmonline.client.game.inventory.InventoryMetaItem;
 import com.wurmonline.client.renderer.PickableUnit;
 import com.wurmonline.client.renderer.TilePicker;
-import com.wurmonline.client.renderer.gui.CreationWindow;
 import com.wurmonline.mesh.Tiles;
 import com.wurmonline.shared.constants.PlayerAction;
 import javafx.util.Pair;
+import net.ildar.wurm.ActionSlots;
 import net.ildar.wurm.BotRegistration;
 import net.ildar.wurm.Mod;
+import net.ildar.wurm.ToolMaintenance;
+import net.ildar.wurm.ToolSelector;
 import net.ildar.wurm.Utils;
+import net.ildar.wurm.WorldSnapshot;
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 
 import java.util.Arrays;
@@ -29,6 +32,8 @@ public class DiggerBot extends BotBase {
     private DiggingTileInfo diggingTileInfo;
     private final AreaAssistant areaAssistant;
     private InventoryMetaItem shovelItem;
+    private final ToolSelector shovelSelector = new ToolSelector("shovel");
+    private final ToolSelector pickaxeSelector = new ToolSelector("pickaxe");
     private PlayerAction digAction;
     private final Set<Pair<Integer, Integer>> invalidCorners;
     private boolean surfaceMiningMode;
@@ -81,7 +86,9 @@ public class DiggerBot extends BotBase {
 
     @Override
     protected void work() throws Exception {
-        shovelItem = Utils.getInventoryItem("shovel");
+        registerInventoryListener(shovelSelector);
+        registerInventoryListener(pickaxeSelector);
+        shovelItem = shovelSelector.get();
         if (shovelItem == null) {
             Utils.consolePrint("Player doesn't have a shovel!");
             return;
@@ -89,22 +96,34 @@ public class DiggerBot extends BotBase {
         setStaminaThreshold(0.95f);
         setTimeout(500);
         clicks = Utils.getMaxActionNumber();
-        CreationWindow creationWindow = Mod.hud.getCreationWindow();
-        Object progressBar = ReflectionUtil.getPrivateField(creationWindow, ReflectionUtil.getField(creationWindow.getClass(), "progressBar"));
         registerEventProcessors();
+        boolean shovelMissing = false;
         while (isActive()) {
             waitOnPause();
+            WorldSnapshot snapshot = WorldSnapshot.get();
+            //the best tool may change with wear and repairs, the shovel can be missing for a while, e.g. when moved
+            InventoryMetaItem shovel = shovelSelector.get();
+            if (shovel == null) {
+                if (!shovelMissing)
+                    Utils.consolePrint("Player doesn't have a shovel! The work is resumed when it is back");
+                shovelMissing = true;
+                sleep(timeout);
+                continue;
+            }
+            shovelMissing = false;
+            shovelItem = shovel;
+            if (surfaceMiningMode) {
+                InventoryMetaItem pickaxe = pickaxeSelector.get();
+                if (pickaxe != null)
+                    pickaxeItem = pickaxe;
+            }
             if (toolRepairing) {
-                if (surfaceMiningMode && pickaxeItem.getDamage() > 10)
-                    Mod.hud.sendAction(PlayerAction.REPAIR, pickaxeItem.getId());
-                if (!surfaceMiningMode && shovelItem.getDamage() > 10)
-                    Mod.hud.sendAction(PlayerAction.REPAIR, shovelItem.getId());
+                ToolMaintenance.repair(surfaceMiningMode ? pickaxeItem : shovelItem);
             }
-            float stamina = Mod.hud.getWorld().getPlayer().getStamina();
-            float damage = Mod.hud.getWorld().getPlayer().getDamage();
-            float progress = ReflectionUtil.getPrivateField(progressBar,
-                    ReflectionUtil.getField(progressBar.getClass(), "progress"));
-            stopDiggingIfHeightIsLower(progressBar);
+            float stamina = snapshot.stamina;
+            float damage = snapshot.damage;
+            float progress = snapshot.progress;
+            stopDiggingIfHeightIsLower(snapshot);
             if ((stamina + damage) > staminaThreshold && progress == 0f) {
                 switch (workMode) {
                     case Digging: {
@@ -126,8 +145,9 @@ public class DiggerBot extends BotBase {
                                 if (areaAssistant.areaTourActivated()) {
                                     while (areaAssistant.areaTourActivated()) {
                                         areaAssistant.areaNextPosition();
-                                        diggingTileInfo.x = (int) (Mod.hud.getWorld().getPlayerPosX() / 4);
-                                        diggingTileInfo.y = (int) (Mod.hud.getWorld().getPlayerPosY() / 4);
+                                        WorldSnapshot movedSnapshot = WorldSnapshot.next();
+                                        diggingTileInfo.x = (int) (movedSnapshot.posX / 4);
+                                        diggingTileInfo.y = (int) (movedSnapshot.posY / 4);
                                         if (validCornersExists()) {
                                             moveToNextTileCorner();
                                             break;
@@ -220,16 +240,15 @@ public class DiggerBot extends BotBase {
         return minH < diggingHeightLimit && maxH != minH;
     }
 
-    private void stopDiggingIfHeightIsLower(Object progressBar) throws Exception {
-        int x = Math.round(Mod.hud.getWorld().getPlayerPosX() / 4);
-        int y = Math.round(Mod.hud.getWorld().getPlayerPosY() / 4);
+    private void stopDiggingIfHeightIsLower(WorldSnapshot snapshot) {
+        int x = Math.round(snapshot.posX / 4);
+        int y = Math.round(snapshot.posY / 4);
         int h = (int) (Mod.hud.getWorld().getNearTerrainBuffer().getHeight(x, y) * 10);
         String actionKey = "digging";
         if (surfaceMiningMode)
             actionKey = "mining";
         if (h <= diggingHeightLimit) {
-            String actionName = ReflectionUtil.getPrivateField(progressBar,
-                    ReflectionUtil.getField(progressBar.getClass(), "title"));
+            String actionName = snapshot.progressTitle;
             if (actionName != null && actionName.contains(actionKey))
                 Mod.hud.sendAction(PlayerAction.STOP, 0);
         }
@@ -239,16 +258,17 @@ public class DiggerBot extends BotBase {
      * @return true if actions were made
      */
     private boolean doDigActions() {
-        int x = Math.round(Mod.hud.getWorld().getPlayerPosX() / 4);
-        int y = Math.round(Mod.hud.getWorld().getPlayerPosY() / 4);
+        WorldSnapshot snapshot = WorldSnapshot.get();
+        int x = Math.round(snapshot.posX / 4);
+        int y = Math.round(snapshot.posY / 4);
         Tiles.Tile tileType = Mod.hud.getWorld().getNearTerrainBuffer().getTileType(x, y);
         if (isCornerInvalid(x, y))
             return false;
         int h = (int) (Mod.hud.getWorld().getNearTerrainBuffer().getHeight(x, y) * 10);
         if (h > diggingHeightLimit) {
-            if (Mod.hud.getWorld().getPlayerLayer() < 0)
+            if (snapshot.layer < 0)
                 return false;
-            int neededClicks = Math.min(h - diggingHeightLimit, clicks);
+            int neededClicks = Math.min(h - diggingHeightLimit, Math.min(clicks, ActionSlots.getShare()));
             if (surfaceMiningMode) {
                 for (int i = 0; i < neededClicks; i++) {
                     if (isTileRock(tileType)) {
@@ -296,8 +316,9 @@ public class DiggerBot extends BotBase {
     }
 
     private void handleInvalidCorner() {
-        int x = Math.round(Mod.hud.getWorld().getPlayerPosX() / 4);
-        int y = Math.round(Mod.hud.getWorld().getPlayerPosY() / 4);
+        WorldSnapshot snapshot = WorldSnapshot.get();
+        int x = Math.round(snapshot.posX / 4);
+        int y = Math.round(snapshot.posY / 4);
         invalidCorners.add(new Pair<>(x, y));
     }
 
@@ -351,8 +372,9 @@ public class DiggerBot extends BotBase {
     private void moveToNextTileCorner() throws InterruptedException {
         if (workMode != WorkMode.DiggingTile)
             return;
-        int x = Math.round(Mod.hud.getWorld().getPlayerPosX() / 4);
-        int y = Math.round(Mod.hud.getWorld().getPlayerPosY() / 4);
+        WorldSnapshot snapshot = WorldSnapshot.get();
+        int x = Math.round(snapshot.posX / 4);
+        int y = Math.round(snapshot.posY / 4);
         if (Math.abs(x - diggingTileInfo.x) > 1 || Math.abs(y - diggingTileInfo.y) > 1) {
             workMode = WorkMode.Unknown;
             Utils.showOnScreenMessage("You moved from tile too far away");
@@ -385,7 +407,7 @@ public class DiggerBot extends BotBase {
 
     private void toggleSurfaceMining() {
         if (!surfaceMiningMode) {
-            pickaxeItem = Utils.getInventoryItem("pickaxe");
+            pickaxeItem = pickaxeSelector.get();
             if (pickaxeItem == null) {
                 Utils.consolePrint("You don't have a pickaxe");
             }
@@ -474,8 +496,9 @@ public class DiggerBot extends BotBase {
             }
             try {
                 diggingTileInfo = new DiggingTileInfo();
-                diggingTileInfo.x = (int) (Mod.hud.getWorld().getPlayerPosX() / 4);
-                diggingTileInfo.y = (int) (Mod.hud.getWorld().getPlayerPosY() / 4);
+                WorldSnapshot snapshot = WorldSnapshot.get();
+                diggingTileInfo.x = (int) (snapshot.posX / 4);
+                diggingTileInfo.y = (int) (snapshot.posY / 4);
                 moveToNextTileCorner();
                 workMode = WorkMode.DiggingTile;
                 Utils.consolePrint("The digging of tile (" + diggingTileInfo.x + "," + diggingTileInfo.y + ") is on");
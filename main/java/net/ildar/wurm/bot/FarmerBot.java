@@ -1,16 +1,17 @@
 package net.ildar.wurm.bot;
 
-import com.wurmonline.client.game.PlayerObj;
 import com.wurmonline.client.game.World;
 import com.wurmonline.client.game.inventory.InventoryMetaItem;
-import com.wurmonline.client.renderer.gui.CreationWindow;
 import com.wurmonline.mesh.FieldData;
 import com.wurmonline.mesh.Tiles;
 import com.wurmonline.shared.constants.PlayerAction;
+import net.ildar.wurm.ActionSlots;
 import net.ildar.wurm.BotRegistration;
 import net.ildar.wurm.Mod;
+import net.ildar.wurm.ToolMaintenance;
+import net.ildar.wurm.ToolSelector;
 import net.ildar.wurm.Utils;
-import org.gotti.wurmunlimited.modloader.ReflectionUtil;
+import net.ildar.wurm.WorldSnapshot;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -52,21 +53,18 @@ public class FarmerBot extends BotBase {
     protected void work() throws Exception {
         setStaminaThreshold(0.9f);
         setTimeout(500);
-        int maxActions = Utils.getMaxActionNumber();
-        CreationWindow creationWindow = Mod.hud.getCreationWindow();
-        Object progressBar = ReflectionUtil.getPrivateField(creationWindow, ReflectionUtil.getField(creationWindow.getClass(), "progressBar"));
         World world = Mod.hud.getWorld();
-        PlayerObj player = world.getPlayer();
         Set<String> cultivatedTiles = new HashSet<>(Arrays.asList(
                 Tiles.Tile.TILE_STEPPE.tilename, Tiles.Tile.TILE_MOSS.tilename, Tiles.Tile.TILE_DIRT_PACKED.tilename));
         while (isActive()) {
             waitOnPause();
-            float stamina = player.getStamina();
-            float damage = player.getDamage();
-            float progress = ReflectionUtil.getPrivateField(progressBar,
-                    ReflectionUtil.getField(progressBar.getClass(), "progress"));
+            WorldSnapshot snapshot = WorldSnapshot.get();
+            float stamina = snapshot.stamina;
+            float damage = snapshot.damage;
+            float progress = snapshot.progress;
             if ((stamina + damage) > staminaThreshold && progress == 0f) {
                 int[][] checkedtiles = Utils.getAreaCoordinates();
+                int maxActions = ActionSlots.getShare();
                 int initiatedActions = 0;
                 int tileIndex = -1;
 
@@ -149,8 +147,8 @@ public class FarmerBot extends BotBase {
     }
 
     private void checkToolDamage(InventoryMetaItem toolItem) {
-        if (repairing && toolItem.getDamage() > 10)
-            Mod.hud.sendAction(PlayerAction.REPAIR, toolItem.getId());
+        if (repairing)
+            ToolMaintenance.repair(toolItem);
     }
 
     private void addDropItemName(String[] input) {
@@ -181,7 +179,7 @@ public class FarmerBot extends BotBase {
 
     private void toggleCultivating() {
         if (!cultivating) {
-            shovelItem = Utils.getInventoryItem("shovel");
+            shovelItem = ToolSelector.findBest("shovel");
             if (shovelItem == null) {
                 Utils.consolePrint("The player don't have a shovel!");
                 return;
@@ -215,7 +213,7 @@ public class FarmerBot extends BotBase {
 
     private void toggleHarvesting() {
         if (!harvesting) {
-            scytheItem = Utils.getInventoryItem("scythe");
+            scytheItem = ToolSelector.findBest("scythe");
             if (scytheItem == null) {
                 Utils.consolePrint("The player don't have a scythe!");
                 return;
@@ -231,7 +229,7 @@ public class FarmerBot extends BotBase {
 
     private void toggleFarmTending() {
         if (!farmTending) {
-            rakeItem = Utils.getInventoryItem("rake");
+            rakeItem = ToolSelector.findBest("rake");
             if (rakeItem == null) {
                 Utils.consolePrint("The player don't have a rake!");
                 return;
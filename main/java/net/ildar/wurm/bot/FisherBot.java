@@ -2,13 +2,13 @@ package net.ildar.wurm.bot;
 
 import com.wurmonline.client.game.World;
 import com.wurmonline.client.game.inventory.InventoryMetaItem;
-import com.wurmonline.client.renderer.gui.CreationWindow;
 import com.wurmonline.mesh.Tiles;
 import com.wurmonline.shared.constants.PlayerAction;
 import net.ildar.wurm.BotRegistration;
 import net.ildar.wurm.Mod;
+import net.ildar.wurm.ToolMaintenance;
 import net.ildar.wurm.Utils;
-import org.gotti.wurmunlimited.modloader.ReflectionUtil;
+import net.ildar.wurm.WorldSnapshot;
 
 public class FisherBot extends BotBase {
     private boolean repairInstrument;
@@ -41,29 +41,23 @@ public class FisherBot extends BotBase {
         Utils.consolePrint(this.getClass().getSimpleName() + " will use " + fishingRod.getBaseName());
         lineBreaks = fishingRod.getBaseName().contains("unstrung");
         World world = Mod.hud.getWorld();
+        WorldSnapshot initialSnapshot = WorldSnapshot.get();
         long tileId = Tiles.getTileId(
-                world.getPlayerCurrentTileX(),
-                world.getPlayerCurrentTileY(),
+                initialSnapshot.tileX,
+                initialSnapshot.tileY,
                 0
         );
 
-        CreationWindow creationWindow = Mod.hud.getCreationWindow();
-        Object progressBar = ReflectionUtil.getPrivateField(creationWindow, ReflectionUtil.getField(creationWindow.getClass(), "progressBar"));
         registerEventProcessors();
         while (isActive()) {
             waitOnPause();
-            float progress = ReflectionUtil.getPrivateField(progressBar, ReflectionUtil.getField(progressBar.getClass(), "progress"));
+            WorldSnapshot snapshot = WorldSnapshot.get();
 
-            if (repairInstrument && fishingRod.getDamage() > 10) {
-                Mod.hud.sendAction(
-                        PlayerAction.REPAIR,
-                        fishingRod.getId()
-                );
-            }
+            if (repairInstrument)
+                ToolMaintenance.repair(fishingRod);
 
-            if (progress == 0f && creationWindow.getActionInUse() == 0) {
-                if (Tiles.getTileId(world.getPlayerCurrentTileX(), world.getPlayerCurrentTileY(), 0) != tileId)
-                    tileId = Tiles.getTileId(world.getPlayerCurrentTileX(), world.getPlayerCurrentTileY(), 0);
+            if (snapshot.isIdle()) {
+                tileId = Tiles.getTileId(snapshot.tileX, snapshot.tileY, 0);
 
                 if (lineBreaks) {
                     InventoryMetaItem fishingLine = Utils.getInventoryItem("fine fishing line");
@@ -77,8 +71,6 @@ public class FisherBot extends BotBase {
                         Utils.consolePrint("You don't have any fishing line");
                     }
                 }
-                if (fishingRod.getDamage() > 1)
-                    Mod.hud.sendAction(PlayerAction.REPAIR, fishingRod.getId());
 
                 world.getServerConnection().sendAction(
                         fishingRod.getId(),
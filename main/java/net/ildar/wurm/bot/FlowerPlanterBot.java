@@ -5,9 +5,12 @@ import com.wurmonline.client.renderer.gui.CreationWindow;
 import com.wurmonline.mesh.GrassData;
 import com.wurmonline.mesh.Tiles;
 import com.wurmonline.shared.constants.PlayerAction;
+import net.ildar.wurm.ActionSlots;
 import net.ildar.wurm.BotRegistration;
 import net.ildar.wurm.Mod;
+import net.ildar.wurm.ToolSelector;
 import net.ildar.wurm.Utils;
+import net.ildar.wurm.WorldSnapshot;
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 
 import java.lang.reflect.Method;
@@ -33,14 +36,10 @@ public class FlowerPlanterBot extends BotBase {
         setTimeout(300);
         setStaminaThreshold(0.96f);
 
-        CreationWindow creationWindow = Mod.hud.getCreationWindow();
         Method sendCreateAction = ReflectionUtil.getMethod(CreationWindow.class, "sendCreateAction");
         sendCreateAction.setAccessible(true);
-        Object progressBar = ReflectionUtil.getPrivateField(creationWindow,
-                ReflectionUtil.getField(creationWindow.getClass(), "progressBar"));
-        int maxActions = Utils.getMaxActionNumber();
-        InventoryMetaItem sickle = Utils.getInventoryItem("sickle");
-        InventoryMetaItem shovel = Utils.getInventoryItem("shovel");
+        InventoryMetaItem sickle = ToolSelector.findBest("sickle");
+        InventoryMetaItem shovel = ToolSelector.findBest("shovel");
         if (sickle != null)
             sickleId = sickle.getId();
         if (shovel != null)
@@ -59,14 +58,14 @@ public class FlowerPlanterBot extends BotBase {
         BotState state = BotState.PLANT;
         while (isActive()) {
             waitOnPause();
-            float stamina = Mod.hud.getWorld().getPlayer().getStamina();
-            float damage = Mod.hud.getWorld().getPlayer().getDamage();
-            float progress = ReflectionUtil.getPrivateField(progressBar,
-                    ReflectionUtil.getField(progressBar.getClass(), "progress"));
+            WorldSnapshot snapshot = WorldSnapshot.get();
+            float stamina = snapshot.stamina;
+            float damage = snapshot.damage;
             int[][] checkedtiles = Utils.getAreaCoordinates();
+            int maxActions = ActionSlots.getShare();
             int sentactions = 0;
 
-            if ((stamina + damage) > staminaThreshold && creationWindow.getActionInUse() == 0 && progress == 0f) {
+            if ((stamina + damage) > staminaThreshold && snapshot.isIdle()) {
                 switch (state) {
                     case PLANT:
                         long[] flowerIds = new long[maxActions];
@@ -2,22 +2,35 @@ package net.ildar.wurm.bot;
 
 import com.wurmonline.client.game.inventory.InventoryMetaItem;
 import net.ildar.wurm.BotRegistration;
+import net.ildar.wurm.InventoryItemList;
+import net.ildar.wurm.ItemClassifier;
+import net.ildar.wurm.ItemReservations;
 import net.ildar.wurm.Mod;
+import net.ildar.wurm.Pipeline;
 import net.ildar.wurm.Utils;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class ForageStuffMoverBot extends BotBase {
-    private final List<Long> targets = new ArrayList<>();
-    private boolean moveRareItems;
-    private boolean notMoveRocks;
+    private static final long MOVE_TIMEOUT = 5000;
+    private static final long FULL_TARGET_TIMEOUT = 60000;
+    private static final int MAX_ITEMS_PER_MOVE = 100;
+
+    private final List<Target> targets = new CopyOnWriteArrayList<>();
+    private final Map<Long, Move> moves = new HashMap<>();
+    private final InventoryItemList foragables = new InventoryItemList(Mod.hud.getInventoryWindow().getInventoryListComponent(),
+            this::shouldBeMoved, null);
+    private volatile boolean moveRareItems;
+    private volatile boolean notMoveRocks;
+    private int capacity = 100;
+    private boolean allTargetsFull;
 
     public ForageStuffMoverBot() {
         registerInputHandler(ForageStuffMoverBot.InputKey.at, input -> addTarget());
         registerInputHandler(ForageStuffMoverBot.InputKey.r, input -> toggleMovingRareItems());
         registerInputHandler(ForageStuffMoverBot.InputKey.mr, input -> toggleMovingRocks());
+        registerInputHandler(ForageStuffMoverBot.InputKey.c, this::setCapacity);
     }
 
     public static BotRegistration getRegistration() {
@@ -29,53 +42,196 @@ public class ForageStuffMoverBot extends BotBase {
 
     @Override
     public void work() throws Exception {
+        registerInventoryListener(foragables);
         while (isActive()) {
             waitOnPause();
-            List<InventoryMetaItem> foragables = Utils.getSelectedItems(Mod.hud.getInventoryWindow().getInventoryListComponent(), true, true);
-            List<InventoryMetaItem> moveList = foragables.stream()
-                    .filter(item -> ForagerBot.isForagable(item) && !(notMoveRocks && item.getBaseName().contains("rock")))
-                    .filter(item -> moveRareItems || item.getRarity() == 0)
-                    .limit(100)
-                    .collect(Collectors.toList());
-            if (moveList.size() == 0) {
-                Utils.consolePrint("Nothing to move");
-            } else if (targets.size() == 0) {
-                Utils.consolePrint("No target containers to move to");
-            } else {
-                long[] moveIds = Utils.getItemIds(moveList);
-                for (long target : targets)
-                    Mod.hud.getWorld().getServerConnection().sendMoveSomeItems(target, moveIds);
-            }
+            List<InventoryMetaItem> items = foragables.getItems();
+            checkMoves(items);
+            List<InventoryMetaItem> newItems = new ArrayList<>();
+            for (InventoryMetaItem item : items)
+                if (!moves.containsKey(item.getId()) && !ItemReservations.isReserved(item.getId()))
+                    newItems.add(item);
+            if (newItems.size() > 0) {
+                if (targets.size() == 0)
+                    Utils.consolePrint("No target containers to move to");
+                else
+                    moveItems(newItems);
+            } else if (moves.isEmpty())
+                signal(Pipeline.Signal.NO_INPUT);
             sleep(timeout);
         }
     }
 
+    /**
+     * Items that left the list were moved, the items inside of targets are not listed. The target of items that are still in the inventory
+     * after the timeout is considered full, those items will be moved to the next target
+     */
+    private void checkMoves(List<InventoryMetaItem> items) {
+        if (moves.isEmpty())
+            return;
+        Set<Long> itemIds = new HashSet<>();
+        for (InventoryMetaItem item : items)
+            itemIds.add(item.getId());
+        long now = System.currentTimeMillis();
+        for (Iterator<Map.Entry<Long, Move>> iterator = moves.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<Long, Move> entry = iterator.next();
+            Move move = entry.getValue();
+            if (!itemIds.contains(entry.getKey())) {
+                iterator.remove();
+                move.target.pending--;
+                move.target.moved++;
+                continue;
+            }
+            if (Math.abs(now - move.sendTime) > MOVE_TIMEOUT) {
+                iterator.remove();
+                ItemReservations.release(entry.getKey());
+                move.target.pending--;
+                if (!move.target.full)
+                    Utils.consolePrint("The target " + move.target.id + " seems to be full");
+                move.target.setFull(now);
+            }
+        }
+    }
+
+    /**
+     * Spreads the items between targets by their remaining capacity
+     */
+    private void moveItems(List<InventoryMetaItem> items) {
+        long now = System.currentTimeMillis();
+        int placed = 0;
+        for (Target target : targets) {
+            if (placed >= items.size())
+                break;
+            int quantity = Math.min(Math.min(getRemaining(target, now), items.size() - placed), MAX_ITEMS_PER_MOVE);
+            if (quantity <= 0)
+                continue;
+            List<InventoryMetaItem> batch = ItemReservations.reserve(items.subList(placed, placed + quantity), MOVE_TIMEOUT);
+            placed += quantity;
+            if (batch.isEmpty())
+                continue;
+            for (InventoryMetaItem item : batch)
+                moves.put(item.getId(), new Move(target, now));
+            Mod.hud.getWorld().getServerConnection().sendMoveSomeItems(target.id, Utils.getItemIds(batch));
+            target.pending += batch.size();
+        }
+        if (placed == 0 && !allTargetsFull) {
+            Utils.consolePrint("All targets are full!");
+            allTargetsFull = true;
+        } else if (placed > 0)
+            allTargetsFull = false;
+        signal(allTargetsFull ? Pipeline.Signal.OUTPUT_FULL : Pipeline.Signal.PROGRESS);
+    }
+
+    /**
+     * The full target is tried again after the timeout with the count of moved items reset,
+     * the player could have emptied it
+     */
+    private int getRemaining(Target target, long now) {
+        if (target.full) {
+            if (Math.abs(now - target.fullTime) <= FULL_TARGET_TIMEOUT)
+                return 0;
+            target.full = false;
+            target.moved = 0;
+        }
+        int remaining = capacity - target.moved - target.pending;
+        if (remaining <= 0 && target.pending == 0)
+            target.setFull(now);
+        return Math.max(0, remaining);
+    }
+
     private void addTarget() {
         int x = Mod.hud.getWorld().getClient().getXMouse();
         int y = Mod.hud.getWorld().getClient().getYMouse();
         long[] targets = Mod.hud.getCommandTargetsFrom(x, y);
         if (targets != null && targets.length > 0) {
-            long target = targets[0];
+            Target target = new Target(targets[0]);
             this.targets.add(target);
-            Utils.consolePrint("New target is " + target);
+            //the items that are already in the target mustn't be moved again
+            foragables.reload();
+            Utils.consolePrint("New target is " + target.id);
         } else
             Utils.consolePrint("Can't find the target");
     }
 
+    private boolean shouldBeMoved(InventoryMetaItem item) {
+        return !isInTarget(item)
+                && ForagerBot.isForagable(item)
+                && !(notMoveRocks && ItemClassifier.is(item, ItemClassifier.Category.ROCK))
+                && (moveRareItems || item.getRarity() == 0);
+    }
+
+    private boolean isInTarget(InventoryMetaItem item) {
+        for (Target target : targets)
+            if (target.id == item.getParentId())
+                return true;
+        return false;
+    }
+
+    private void setCapacity(String[] input) {
+        if (input == null || input.length != 1) {
+            printInputKeyUsageString(ForageStuffMoverBot.InputKey.c);
+            return;
+        }
+        try {
+            int capacity = Integer.parseInt(input[0]);
+            if (capacity <= 0) {
+                Utils.consolePrint("The capacity must be positive!");
+                return;
+            }
+            this.capacity = capacity;
+            for (Target target : targets)
+                target.full = false;
+            Utils.consolePrint("The capacity of targets is set to " + capacity + " items");
+        } catch (NumberFormatException e) {
+            Utils.consolePrint("Wrong value!");
+        }
+    }
+
     private void toggleMovingRareItems() {
         moveRareItems = !moveRareItems;
+        foragables.reload();
         Utils.consolePrint("Rare items will be " + (moveRareItems ? "" : "NOT") + " moved");
     }
 
     private void toggleMovingRocks() {
         notMoveRocks = !notMoveRocks;
+        foragables.reload();
         Utils.consolePrint("Rocks will be " + (notMoveRocks ? "NOT" : "") + " moved");
     }
 
+    private static class Target {
+        final long id;
+        //the number of items that got to the target and the number of items on the way
+        int moved;
+        int pending;
+        boolean full;
+        long fullTime;
+
+        Target(long id) {
+            this.id = id;
+        }
+
+        void setFull(long time) {
+            full = true;
+            fullTime = time;
+        }
+    }
+
+    private static class Move {
+        final Target target;
+        final long sendTime;
+
+        Move(Target target, long sendTime) {
+            this.target = target;
+            this.sendTime = sendTime;
+        }
+    }
+
     enum InputKey implements BotBase.InputKey {
         at("Add new target item. Foragable and botanizable items will be moved to that destination", ""),
         r("Toggle moving of rare items", ""),
-        mr("Toggle moving of rocks", "");
+        mr("Toggle moving of rocks", ""),
+        c("Set the number of items each target can take", "capacity");
 
         private final String description;
         private final String usage;
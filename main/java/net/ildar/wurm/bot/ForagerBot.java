@@ -1,39 +1,28 @@
 package net.ildar.wurm.bot;
 
-import com.wurmonline.client.game.PlayerObj;
 import com.wurmonline.client.game.World;
 import com.wurmonline.client.game.inventory.InventoryMetaItem;
 import com.wurmonline.mesh.GrassData;
 import com.wurmonline.mesh.Tiles;
 import com.wurmonline.shared.constants.PlayerAction;
 import javafx.util.Pair;
+import net.ildar.wurm.ActionSlots;
 import net.ildar.wurm.BotRegistration;
+import net.ildar.wurm.CombinePlanner;
+import net.ildar.wurm.ItemClassifier;
+import net.ildar.wurm.ItemReservations;
 import net.ildar.wurm.Mod;
+import net.ildar.wurm.ToolSelector;
 import net.ildar.wurm.Utils;
+import net.ildar.wurm.WorldSnapshot;
 
 import java.util.*;
 import java.util.stream.Collectors;
 
 public class ForagerBot extends BotBase {
     static String DEFAULT_CONTAINER_NAME = "backpack";
-    private static final Set<String> forageSet = new HashSet<>(Arrays.asList(
-            "oregano", "rosemary", "lingonberry", "pumpkin",
-            "thyme", "tomato", "lovage", "fennel plant",
-            "acorn", "cumin", "wemp plants", "corn",
-            "potato", "belladonna", "mixed grass", "cotton",
-            "cabbage", "ginger", "raspberries", "cocoa bean",
-            "sage", "blueberry", "carrot", "garlic",
-            "rye", "sassafras", "strawberries", "egg",
-            "nettles", "pea pod", "parsley", "wheat",
-            "barley", "onion", "turmeric", "basil",
-            "mint", "sugar beet", "rice", "cucumber",
-            "lettuce", "branch", "woad", "oat",
-            "paprika", "nutmeg", "rock"));
-    private static final Set<String> forageSetKeywords = new HashSet<>(Arrays.asList(
-            "fresh", "seedling", "sprout", "mushroom", "bouquet"));
     private final List<Pair<Integer, Integer>> queuedTiles = new ArrayList<>();
     private float staminaThreshold;
-    private final Comparator<InventoryMetaItem> weightComparator = Comparator.comparingDouble(InventoryMetaItem::getWeight);
     private final AreaAssistant areaAssistant = new AreaAssistant(this);
     private long sickleId;
     private int maxActions;
@@ -83,7 +72,7 @@ public class ForagerBot extends BotBase {
     }
 
     public static boolean isForagable(InventoryMetaItem item) {
-        return item != null && (forageSet.contains(item.getBaseName()) || forageSetKeywords.stream().anyMatch(keyword -> item.getBaseName().contains(keyword)));
+        return ItemClassifier.is(item, ItemClassifier.Category.FORAGABLE);
     }
 
     @Override
@@ -92,15 +81,15 @@ public class ForagerBot extends BotBase {
         setTimeout(300);
 
         World world = Mod.hud.getWorld();
-        PlayerObj player = world.getPlayer();
         maxActions = Utils.getMaxActionNumber();
         registerEventProcessors();
         while (isActive()) {
             waitOnPause();
-            float stamina = player.getStamina();
-            float damage = player.getDamage();
-            float forageSkill = player.getSkillSet().getSkillValue("foraging");
-            float botanizeSkill = player.getSkillSet().getSkillValue("botanizing");
+            WorldSnapshot snapshot = WorldSnapshot.get();
+            float stamina = snapshot.stamina;
+            float damage = snapshot.damage;
+            float forageSkill = snapshot.getSkillValue("foraging");
+            float botanizeSkill = snapshot.getSkillValue("botanizing");
 
             if (Math.abs(lastActionFinishedTime - System.currentTimeMillis()) > 30000 && (stamina + damage) > staminaThreshold && queuedTiles.size() > 0) {
                 if (verbose)
@@ -112,10 +101,11 @@ public class ForagerBot extends BotBase {
                     Utils.consolePrint(getClass().getSimpleName() + " queue cleared");
             }
             if ((stamina + damage) > staminaThreshold && queuedTiles.size() == 0) {
+                int actionLimit = Math.min(maxActions, ActionSlots.getShare());
                 int[][] checkedtiles = Utils.getAreaCoordinates();
                 int tileIndex = -1;
                 synchronized (queuedTiles) {
-                    while (++tileIndex < 9 && queuedTiles.size() < maxActions) {
+                    while (++tileIndex < 9 && queuedTiles.size() < actionLimit) {
                         Pair<Integer, Integer> coordsPair = new Pair<>(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1]);
                         if (queuedTiles.contains(coordsPair))
                             continue;
@@ -125,7 +115,7 @@ public class ForagerBot extends BotBase {
                                 || tileType.tilename.equals("Marsh")
                                 || tileType.tilename.equals("Moss")
                                 || tileType.tilename.equals("Steppe")) {
-                            if (botanizing && !botanizedTiles.contains(coordsPair) && !botanizeTilesInProcess.contains(coordsPair) && queuedTiles.size() < maxActions
+                            if (botanizing && !botanizedTiles.contains(coordsPair) && !botanizeTilesInProcess.contains(coordsPair) && queuedTiles.size() < actionLimit
                                     && (!tileType.tilename.equals("Marsh") || botanizeSkill > 27)
                                     && (!tileType.tilename.equals("Moss") || botanizeSkill > 35)) {
                                 if (verbose)
@@ -148,7 +138,7 @@ public class ForagerBot extends BotBase {
                                 || tileType.tilename.equals("Steppe")
                                 || tileType.tilename.equals("Tundra")
                                 || tileType.tilename.equals("Marsh")) {
-                            if (foraging && !foragedTiles.contains(coordsPair) && !forageTilesInProcess.contains(coordsPair) && queuedTiles.size() < maxActions
+                            if (foraging && !foragedTiles.contains(coordsPair) && !forageTilesInProcess.contains(coordsPair) && queuedTiles.size() < actionLimit
                                     && (!tileType.tilename.equals("Steppe") || botanizeSkill > 23)
                                     && (!tileType.tilename.equals("Tundra") || botanizeSkill > 33)
                                     && (!tileType.tilename.equals("Marsh") || botanizeSkill > 43)) {
@@ -169,7 +159,7 @@ public class ForagerBot extends BotBase {
                             }
                         }
                         if (grassGathering && (tileType.isGrass() || tileType.isTree() || tileType.isBush())) {
-                            if (GrassData.getFlowerTypeName(tileData).contains("flowers") && !tileType.isTree() && !tileType.isBush() && queuedTiles.size() < maxActions) {
+                            if (GrassData.getFlowerTypeName(tileData).contains("flowers") && !tileType.isTree() && !tileType.isBush() && queuedTiles.size() < actionLimit) {
                                 Mod.hud.getWorld().getServerConnection().sendAction(sickleId,
                                         new long[]{Tiles.getTileId(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1], 0)},
                                         new PlayerAction("", (short) 187, PlayerAction.ANYTHING));
@@ -180,7 +170,7 @@ public class ForagerBot extends BotBase {
                             }
                             if (grassGathering && ((tileType.isGrass() && GrassData.GrowthStage.decodeTileData(tileData) != GrassData.GrowthStage.SHORT) ||
                                     ((tileType.isTree() || tileType.isBush()) && GrassData.GrowthTreeStage.decodeTileData(tileData) != GrassData.GrowthTreeStage.LAWN
-                                            && GrassData.GrowthTreeStage.decodeTileData(tileData) != GrassData.GrowthTreeStage.SHORT)) && queuedTiles.size() < maxActions) {
+                                            && GrassData.GrowthTreeStage.decodeTileData(tileData) != GrassData.GrowthTreeStage.SHORT)) && queuedTiles.size() < actionLimit) {
                                 Mod.hud.getWorld().getServerConnection().sendAction(sickleId,
                                         new long[]{Tiles.getTileId(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1], 0)},
                                         PlayerAction.GATHER);
@@ -197,25 +187,7 @@ public class ForagerBot extends BotBase {
 
                 if (grassGathering) {
                     List<InventoryMetaItem> grass = Utils.getInventoryItems("mixed grass");
-                    List<InventoryMetaItem> forCombining = new ArrayList<>();
-                    grass.sort(weightComparator);
-                    if (grass != null && grass.size() > 0) {
-                        float totalWeight = 0;
-                        for (InventoryMetaItem grassItem : grass)
-                            if (grassItem.getWeight() + totalWeight < 3.2) {
-                                forCombining.add(grassItem);
-                                totalWeight += grassItem.getWeight();
-                                if (totalWeight > 3.2) break;
-                            }
-                        if (forCombining.size() > 1) {
-                            long[] targetIds = new long[forCombining.size()];
-                            for (tileIndex = 0; tileIndex < Math.min(forCombining.size(), 64); tileIndex++)
-                                targetIds[tileIndex] = forCombining.get(tileIndex).getId();
-                            Mod.hud.getWorld().getServerConnection().sendAction(
-                                    targetIds[0], targetIds, PlayerAction.COMBINE);
-
-                        }
-                    }
+                    CombinePlanner.combine(grass, 3.2f);
                 }
 
                 List<InventoryMetaItem> firstLevelItems = Utils.getFirstLevelItems();
@@ -226,8 +198,8 @@ public class ForagerBot extends BotBase {
                     List<InventoryMetaItem> containers = firstLevelItems.stream()
                             .filter(item -> item.getBaseName().contains(containerName))
                             .collect(Collectors.toList());
-                    long[] foragablesIds = Utils.getItemIds(foragables);
-                    if (foragablesIds != null && foragables.size() > 20) {
+                    long[] foragablesIds = ItemReservations.reserve(Utils.getItemIds(foragables), ItemReservations.DEFAULT_TTL);
+                    if (foragablesIds.length > 20) {
                         for (InventoryMetaItem container : containers) {
                             if (container.getChildren().size() < 100) {
                                 Mod.hud.getWorld().getServerConnection().sendMoveSomeItems(
@@ -418,7 +390,7 @@ public class ForagerBot extends BotBase {
     private void toggleGrassGathering() {
         grassGathering = !grassGathering;
         if (grassGathering) {
-            InventoryMetaItem sickle = Utils.getInventoryItem("sickle");
+            InventoryMetaItem sickle = ToolSelector.findBest("sickle");
             if (sickle == null) {
                 Utils.consolePrint("You don't have a sickle! " + this.getClass().getSimpleName() + " won't start");
                 grassGathering = false;
@@ -447,8 +419,9 @@ public class ForagerBot extends BotBase {
         synchronized (queuedTiles) {
             if (queuedTiles.size() > 0) {
                 Pair<Integer, Integer> tile = queuedTiles.get(queuedTiles.size() - 1);
-                float forageSkill = Mod.hud.getWorld().getPlayer().getSkillSet().getSkillValue("foraging");
-                float botanizeSkill = Mod.hud.getWorld().getPlayer().getSkillSet().getSkillValue("botanizing");
+                WorldSnapshot snapshot = WorldSnapshot.get();
+                float forageSkill = snapshot.getSkillValue("foraging");
+                float botanizeSkill = snapshot.getSkillValue("botanizing");
                 if (forageTilesInProcess.contains(tile)) {
                     forageTilesInProcess.remove(tile);
                     if (forageSkill > 80)
@@ -1,6 +1,5 @@
 package net.ildar.wurm.bot;
 
-import com.wurmonline.client.game.PlayerObj;
 import com.wurmonline.client.game.World;
 import com.wurmonline.client.game.inventory.InventoryMetaItem;
 import com.wurmonline.mesh.FoliageAge;
@@ -8,9 +7,13 @@ import com.wurmonline.mesh.Tiles;
 import com.wurmonline.mesh.TreeData;
 import com.wurmonline.shared.constants.PlayerAction;
 import javafx.util.Pair;
+import net.ildar.wurm.ActionSlots;
 import net.ildar.wurm.BotRegistration;
+import net.ildar.wurm.ItemClassifier;
 import net.ildar.wurm.Mod;
+import net.ildar.wurm.ToolSelector;
 import net.ildar.wurm.Utils;
+import net.ildar.wurm.WorldSnapshot;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -63,9 +66,8 @@ public class ForesterBot extends BotBase {
         setStaminaThreshold(0.95f);
         setTimeout(300);
         World world = Mod.hud.getWorld();
-        PlayerObj player = world.getPlayer();
         maxActions = Utils.getMaxActionNumber();
-        InventoryMetaItem sickle = Utils.getInventoryItem("sickle");
+        InventoryMetaItem sickle = ToolSelector.findBest("sickle");
         InventoryMetaItem bucket = Utils.getInventoryItem("bucket");
         lastActionFinishedTime = System.currentTimeMillis();
         long sickleId;
@@ -82,8 +84,9 @@ public class ForesterBot extends BotBase {
         registerEventProcessors();
         while (isActive()) {
             waitOnPause();
-            float stamina = player.getStamina();
-            float damage = player.getDamage();
+            WorldSnapshot snapshot = WorldSnapshot.get();
+            float stamina = snapshot.stamina;
+            float damage = snapshot.damage;
             if (Math.abs(lastActionFinishedTime - System.currentTimeMillis()) > 10000 && (stamina + damage) > staminaThreshold)
                 queuedTiles.clear();
             if (Math.abs(lastActionFinishedTime - System.currentTimeMillis()) > 20000 && (stamina + damage) > staminaThreshold)
@@ -91,9 +94,10 @@ public class ForesterBot extends BotBase {
 
             if ((stamina + damage) > staminaThreshold && queuedTiles.size() == 0 && toHarvest == 0) {
                 int[][] checkedtiles = Utils.getAreaCoordinates();
+                int actionLimit = Math.min(maxActions, ActionSlots.getShare());
                 int tileIndex = -1;
                 Set<Long> usedSprouts = new HashSet<>();
-                while (++tileIndex < 9 && queuedTiles.size() + toHarvest < maxActions && toHarvest <= maxActions) {
+                while (++tileIndex < 9 && queuedTiles.size() + toHarvest < actionLimit && toHarvest <= actionLimit) {
                     Pair<Integer, Integer> coordsPair = new Pair<>(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1]);
                     if (queuedTiles.contains(coordsPair))
                         continue;
@@ -159,7 +163,7 @@ public class ForesterBot extends BotBase {
                         }
                     }
                     if (planting && (tileType.tilename.equals("Steppe") || tileType.tilename.equals("Moss"))) {
-                        InventoryMetaItem shovel = Utils.getInventoryItem("shovel");
+                        InventoryMetaItem shovel = ToolSelector.findBest("shovel");
                         if (shovel != null) {
                             world.getServerConnection().sendAction(shovel.getId(),
                                     new long[]{Tiles.getTileId(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1], 0)},
@@ -198,7 +202,7 @@ public class ForesterBot extends BotBase {
     }
 
     private boolean itemShouldBeMoved(InventoryMetaItem item) {
-        if (item.getBaseName().contains("sprout"))
+        if (ItemClassifier.is(item, ItemClassifier.Category.SPROUT))
             return true;
         for (String itemName : itemNamesToMove) {
             if (item.getBaseName().contains(itemName))
@@ -226,7 +230,7 @@ public class ForesterBot extends BotBase {
     }
 
     private void increaseHarvests(FoliageAge fage) {
-        float f = Mod.hud.getWorld().getPlayer().getSkillSet().getSkillValue("forestry");
+        float f = WorldSnapshot.get().getSkillValue("forestry");
         int maxHarvest = 1;
         if (f > 80)
             maxHarvest = 4;
@@ -324,7 +328,7 @@ public class ForesterBot extends BotBase {
 
     private void toggleShriveledTreesChopping() {
         if (!shriveledTreesChopping) {
-            InventoryMetaItem hatchet = Utils.getInventoryItem("hatchet");
+            InventoryMetaItem hatchet = ToolSelector.findBest("hatchet");
             if (hatchet == null) {
                 Utils.consolePrint("You don't have a hatchet!");
             } else {
@@ -342,7 +346,7 @@ public class ForesterBot extends BotBase {
     private void toggleDeforestation() {
         deforesting = !deforesting;
         if (deforesting) {
-            InventoryMetaItem hatchet = Utils.getInventoryItem("hatchet");
+            InventoryMetaItem hatchet = ToolSelector.findBest("hatchet");
             if (hatchet == null) {
                 Utils.consolePrint("You don't have a hatchet!");
                 deforesting = false;
@@ -8,6 +8,7 @@ import com.wurmonline.shared.constants.PlayerAction;
 import net.ildar.wurm.BotRegistration;
 import net.ildar.wurm.Mod;
 import net.ildar.wurm.Utils;
+import net.ildar.wurm.WorldSnapshot;
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 
 import java.util.ConcurrentModificationException;
@@ -39,8 +40,9 @@ public class GroundItemGetterBot extends BotBase {
                 ServerConnectionListenerClass sscc = Mod.hud.getWorld().getServerConnection().getServerConnectionListener();
                 Map<Long, GroundItemCellRenderable> groundItems = ReflectionUtil.getPrivateField(sscc,
                         ReflectionUtil.getField(sscc.getClass(), "groundItems"));
-                float x = Mod.hud.getWorld().getPlayerPosX();
-                float y = Mod.hud.getWorld().getPlayerPosY();
+                WorldSnapshot snapshot = WorldSnapshot.get();
+                float x = snapshot.posX;
+                float y = snapshot.posY;
                 if (groundItems.size() > 0)
                     try {
                         for (Map.Entry<Long, GroundItemCellRenderable> entry : groundItems.entrySet()) {
@@ -63,8 +65,9 @@ public class GroundItemGetterBot extends BotBase {
     @SuppressWarnings("unused")
     public void processNewItem(StaticModelRenderable staticModelRenderable) {
         try {
-            float x = Mod.hud.getWorld().getPlayerPosX();
-            float y = Mod.hud.getWorld().getPlayerPosY();
+            WorldSnapshot snapshot = WorldSnapshot.get();
+            float x = snapshot.posX;
+            float y = snapshot.posY;
             float itemX = ReflectionUtil.getPrivateField(staticModelRenderable,
                     ReflectionUtil.getField(StaticModelRenderable.class, "x"));
             float itemY = ReflectionUtil.getPrivateField(staticModelRenderable,
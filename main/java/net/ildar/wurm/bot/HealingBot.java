@@ -1,17 +1,14 @@
 package net.ildar.wurm.bot;
 
 import com.wurmonline.client.game.inventory.InventoryMetaItem;
-import com.wurmonline.client.renderer.gui.CreationWindow;
 import com.wurmonline.shared.constants.PlayerAction;
+import net.ildar.wurm.ActionSlots;
 import net.ildar.wurm.BotRegistration;
 import net.ildar.wurm.Mod;
 import net.ildar.wurm.Utils;
-import org.gotti.wurmunlimited.modloader.ReflectionUtil;
-
-import java.util.*;
+import net.ildar.wurm.WorldSnapshot;
 
 public class HealingBot extends BotBase {
-    private final Set<String> WOUND_NAMES = new HashSet<>(Arrays.asList("Cut", "Bite", "Bruise", "Burn", "Hole", "Acid", "Infection"));
     private float minDamage = 0;
 
     public HealingBot() {
@@ -26,51 +23,29 @@ public class HealingBot extends BotBase {
     @Override
     protected void work() throws Exception {
         setTimeout(500);
-        CreationWindow creationWindow = Mod.hud.getCreationWindow();
-        Object progressBar = ReflectionUtil.getPrivateField(creationWindow, ReflectionUtil.getField(creationWindow.getClass(), "progressBar"));
+        WoundIndex woundIndex = new WoundIndex();
+        registerInventoryListener(woundIndex);
+        woundIndex.load();
         while (isActive()) {
             waitOnPause();
-            float progress = ReflectionUtil.getPrivateField(progressBar,
-                    ReflectionUtil.getField(progressBar.getClass(), "progress"));
-            if (progress != 0f) {
-                sleep(timeout);
-                continue;
-            }
-            float damage = Mod.hud.getWorld().getPlayer().getDamage();
-            if (damage == 0) {
+            if (WorldSnapshot.get().damage == 0) {
                 Utils.consolePrint("The player is fully healed");
                 return;
             }
-            InventoryMetaItem cottonItem = Utils.getInventoryItems("cotton").stream().filter(item -> item.getBaseName().equals("cotton")).findFirst().orElse(null);
+            InventoryMetaItem cottonItem = woundIndex.getCotton();
             if (cottonItem == null) {
                 Utils.consolePrint("The player don't have a cotton!");
                 return;
             }
-            List<InventoryMetaItem> inventoryItems = new ArrayList<>();
-            inventoryItems.add(Utils.getRootItem(Mod.hud.getInventoryWindow().getInventoryListComponent()));
-            List<InventoryMetaItem> wounds = new ArrayList<>();
-            while (inventoryItems.size() > 0) {
-                InventoryMetaItem item = inventoryItems.get(0);
-                if (WOUND_NAMES.contains(item.getBaseName())
-                        && !item.getDisplayName().contains("bandaged")
-                        && item.getDamage() > minDamage)
-                    wounds.add(item);
-                if (item.getChildren() != null)
-                    inventoryItems.addAll(item.getChildren());
-                inventoryItems.remove(item);
-            }
-            if (wounds.size() == 0) {
+            if (woundIndex.isEmpty(minDamage)) {
                 Utils.consolePrint("All wounds were treated");
                 return;
             }
-            wounds.sort(Comparator.comparingDouble(InventoryMetaItem::getDamage).reversed());
-            int maxActionNumber = Utils.getMaxActionNumber();
-            int i = 0;
-            for (InventoryMetaItem wound : wounds) {
-                Mod.hud.getWorld().getServerConnection().sendAction(cottonItem.getId(), new long[]{wound.getId()}, PlayerAction.FIRSTAID);
-                if (++i >= maxActionNumber)
-                    break;
-            }
+            //the treatments are tracked by the wounds, so the bot doesn't wait for the actions of other bots
+            int freeActions = ActionSlots.getShare() - woundIndex.getTreatmentCount();
+            if (freeActions > 0)
+                for (InventoryMetaItem wound : woundIndex.pollWounds(minDamage, freeActions))
+                    Mod.hud.getWorld().getServerConnection().sendAction(cottonItem.getId(), new long[]{wound.getId()}, PlayerAction.FIRSTAID);
             sleep(timeout);
         }
     }
@@ -9,19 +9,39 @@ import com.wurmonline.client.renderer.cell.GroundItemCellRenderable;
 import com.wurmonline.client.renderer.gui.*;
 import com.wurmonline.shared.constants.PlayerAction;
 import com.wurmonline.shared.util.MaterialUtilities;
+import net.ildar.wurm.ActionSlots;
 import net.ildar.wurm.BotRegistration;
+import net.ildar.wurm.ItemClassifier;
 import net.ildar.wurm.Mod;
 import net.ildar.wurm.Utils;
+import net.ildar.wurm.WorldSnapshot;
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 
 import java.util.*;
 
 public class ImproverBot extends BotBase {
-    private final List<Tool> tools = new ArrayList<>();
-    private final List<InventoryListComponent> targets = new ArrayList<>();
+    //metal items colder than this can't be improved
+    private static final int MIN_IMPROVE_TEMPERATURE = 5;
+    private static final long FORGE_ROTATION_TIMEOUT = 1000;
+    //the item that didn't get to the forge or out of it in this time is moved again
+    private static final long FORGE_MOVE_TIMEOUT = 10000;
+    //the number of rotated items kept in the forge at once
+    private static final int MAX_FORGE_ITEMS = 10;
+    private final ToolIndex toolIndex = new ToolIndex();
     private float staminaThreshold;
     private boolean improveActionFinished;
     private boolean groundMode;
+    private boolean pipelining;
+    private InventoryListComponent forge;
+    private long forgeId;
+    private int forgeRotationSize = 3;
+    private int forgeTemperature = 10;
+    private long lastForgeRotation;
+    //metal items rotated through the forge -> the container they are returned to
+    private final Map<Long, Long> forgeRotationItems = new HashMap<>();
+    //the items moved to the forge and out of it -> the time the move is considered failed
+    private final Map<Long, Long> movesToForge = new HashMap<>();
+    private final Map<Long, Long> movesFromForge = new HashMap<>();
     private ToolSkill toolSkill = ToolSkill.UNKNOWN;
 
     @SuppressWarnings("ArraysAsListWithZeroOrOneArgument")
@@ -32,49 +52,53 @@ public class ImproverBot extends BotBase {
         registerInputHandler(ImproverBot.InputKey.g, this::toggleGroundMode);
         registerInputHandler(ImproverBot.InputKey.ci, input -> changeInstrument());
         registerInputHandler(ImproverBot.InputKey.ss, this::setToolSkill);
-
-        tools.add(new Tool(1201, "carving knife", true, false, new HashSet<>(Arrays.asList(ToolSkill.CARPENTRY))));
-        tools.add(new Tool(741, "mallet", true, false, new HashSet<>(Arrays.asList(ToolSkill.CARPENTRY, ToolSkill.LEATHERWORKING))));
-        tools.add(new Tool(749, "file", true, false, new HashSet<>(Arrays.asList(ToolSkill.CARPENTRY))));
-        tools.add(new Tool(602, "pelt", true, false, new HashSet<>(Arrays.asList(ToolSkill.CARPENTRY, ToolSkill.BLACKSMITHING))));
-        tools.add(new Tool(606, "log", false, false, new HashSet<>(Arrays.asList(ToolSkill.CARPENTRY))));
-
-        tools.add(new Tool(1201, "stone chisel", true, false, new HashSet<>(Arrays.asList(ToolSkill.MASONRY))));
-        tools.add(new Tool(610, "shards", false, false, new HashSet<>(Arrays.asList(ToolSkill.MASONRY))));
-
-        tools.add(new Tool(808, "spatula", true, false, new HashSet<>(Arrays.asList(ToolSkill.POTTERY))));
-        tools.add(new Tool(802, "clay shaper", true, false, new HashSet<>(Arrays.asList(ToolSkill.POTTERY))));
-        tools.add(new Tool(540, "water", false, false, new HashSet<>(Arrays.asList(ToolSkill.POTTERY, ToolSkill.CLOTH_TAILORING, ToolSkill.BLACKSMITHING))));
-        tools.add(new Tool(591, "clay", false, true, new HashSet<>(Arrays.asList(ToolSkill.POTTERY))));
-        tools.add(new Tool(4, "hand", true, false, new HashSet<>(Arrays.asList(ToolSkill.POTTERY))));
-
-        tools.add(new Tool(788, "needle", true, false, new HashSet<>(Arrays.asList(ToolSkill.CLOTH_TAILORING, ToolSkill.LEATHERWORKING))));
-        tools.add(new Tool(748, "scissors", true, false, new HashSet<>(Arrays.asList(ToolSkill.CLOTH_TAILORING))));
-        tools.add(new Tool(620, "string of cloth", false, false, new HashSet<>(Arrays.asList(ToolSkill.CLOTH_TAILORING))));
-
-        tools.add(new Tool(766, "leather knife", true, false, new HashSet<>(Arrays.asList(ToolSkill.LEATHERWORKING))));
-        tools.add(new Tool(754, "awl", true, false, new HashSet<>(Arrays.asList(ToolSkill.LEATHERWORKING))));
-        tools.add(new Tool(602, "leather", false, true, new HashSet<>(Arrays.asList(ToolSkill.LEATHERWORKING))));
-
-        tools.add(new Tool(742, "hammer", true, true, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));
-        tools.add(new Tool(803, "whetstone", true, true, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));
-
-        tools.add(new Tool(633, "'lump, iron'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//iron
-        tools.add(new Tool(636, "'lump, copper'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//copper
-        tools.add(new Tool(632, "'lump, silver'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//silver
-        tools.add(new Tool(631, "'lump, electrum'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//electrum
-        tools.add(new Tool(631, "'lump, gold'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//gold
-        tools.add(new Tool(637, "'lump, tin'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//tin
-        tools.add(new Tool(635, "'lump, zinc'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//zinc
-        tools.add(new Tool(634, "'lump, lead'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//lead
-
-        tools.add(new Tool(672, "'lump, steel'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//steel
-        tools.add(new Tool(673, "'lump, brass'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//brass
-        tools.add(new Tool(671, "'lump, bronze'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//bronze
-
-        tools.add(new Tool(638, "'lump, glimmersteel'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//glimmersteel
-        tools.add(new Tool(639, "'lump, adamantine'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//adamantine
-        tools.add(new Tool(630, "'lump, seryll'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//seryll
+        registerInputHandler(ImproverBot.InputKey.fo, input -> toggleForge());
+        registerInputHandler(ImproverBot.InputKey.pl, input -> togglePipelining());
+        registerInputHandler(ImproverBot.InputKey.fn, this::setForgeRotationSize);
+        registerInputHandler(ImproverBot.InputKey.ft, this::setForgeTemperature);
+
+        toolIndex.addTool(new Tool(1201, "carving knife", true, false, new HashSet<>(Arrays.asList(ToolSkill.CARPENTRY))));
+        toolIndex.addTool(new Tool(741, "mallet", true, false, new HashSet<>(Arrays.asList(ToolSkill.CARPENTRY, ToolSkill.LEATHERWORKING))));
+        toolIndex.addTool(new Tool(749, "file", true, false, new HashSet<>(Arrays.asList(ToolSkill.CARPENTRY))));
+        toolIndex.addTool(new Tool(602, "pelt", true, false, new HashSet<>(Arrays.asList(ToolSkill.CARPENTRY, ToolSkill.BLACKSMITHING))));
+        toolIndex.addTool(new Tool(606, "log", false, false, new HashSet<>(Arrays.asList(ToolSkill.CARPENTRY))));
+
+        toolIndex.addTool(new Tool(1201, "stone chisel", true, false, new HashSet<>(Arrays.asList(ToolSkill.MASONRY))));
+        toolIndex.addTool(new Tool(610, "shards", false, false, new HashSet<>(Arrays.asList(ToolSkill.MASONRY))));
+
+        toolIndex.addTool(new Tool(808, "spatula", true, false, new HashSet<>(Arrays.asList(ToolSkill.POTTERY))));
+        toolIndex.addTool(new Tool(802, "clay shaper", true, false, new HashSet<>(Arrays.asList(ToolSkill.POTTERY))));
+        toolIndex.addTool(new Tool(540, "water", false, false, new HashSet<>(Arrays.asList(ToolSkill.POTTERY, ToolSkill.CLOTH_TAILORING, ToolSkill.BLACKSMITHING))));
+        toolIndex.addTool(new Tool(591, "clay", false, true, new HashSet<>(Arrays.asList(ToolSkill.POTTERY))));
+        toolIndex.addTool(new Tool(4, "hand", true, false, new HashSet<>(Arrays.asList(ToolSkill.POTTERY))));
+
+        toolIndex.addTool(new Tool(788, "needle", true, false, new HashSet<>(Arrays.asList(ToolSkill.CLOTH_TAILORING, ToolSkill.LEATHERWORKING))));
+        toolIndex.addTool(new Tool(748, "scissors", true, false, new HashSet<>(Arrays.asList(ToolSkill.CLOTH_TAILORING))));
+        toolIndex.addTool(new Tool(620, "string of cloth", false, false, new HashSet<>(Arrays.asList(ToolSkill.CLOTH_TAILORING))));
+
+        toolIndex.addTool(new Tool(766, "leather knife", true, false, new HashSet<>(Arrays.asList(ToolSkill.LEATHERWORKING))));
+        toolIndex.addTool(new Tool(754, "awl", true, false, new HashSet<>(Arrays.asList(ToolSkill.LEATHERWORKING))));
+        toolIndex.addTool(new Tool(602, "leather", false, true, new HashSet<>(Arrays.asList(ToolSkill.LEATHERWORKING))));
+
+        toolIndex.addTool(new Tool(742, "hammer", true, true, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));
+        toolIndex.addTool(new Tool(803, "whetstone", true, true, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));
+
+        toolIndex.addTool(new Tool(633, "'lump, iron'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//iron
+        toolIndex.addTool(new Tool(636, "'lump, copper'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//copper
+        toolIndex.addTool(new Tool(632, "'lump, silver'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//silver
+        toolIndex.addTool(new Tool(631, "'lump, electrum'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//electrum
+        toolIndex.addTool(new Tool(631, "'lump, gold'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//gold
+        toolIndex.addTool(new Tool(637, "'lump, tin'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//tin
+        toolIndex.addTool(new Tool(635, "'lump, zinc'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//zinc
+        toolIndex.addTool(new Tool(634, "'lump, lead'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//lead
+
+        toolIndex.addTool(new Tool(672, "'lump, steel'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//steel
+        toolIndex.addTool(new Tool(673, "'lump, brass'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//brass
+        toolIndex.addTool(new Tool(671, "'lump, bronze'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//bronze
+
+        toolIndex.addTool(new Tool(638, "'lump, glimmersteel'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//glimmersteel
+        toolIndex.addTool(new Tool(639, "'lump, adamantine'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//adamantine
+        toolIndex.addTool(new Tool(630, "'lump, seryll'", false, false, new HashSet<>(Arrays.asList(ToolSkill.BLACKSMITHING))));//seryll
 
     }
 
@@ -94,34 +118,37 @@ public class ImproverBot extends BotBase {
         setStaminaThreshold(0.8f);
         setTimeout(300);
         registerEventProcessors();
-        CreationWindow creationWindow = Mod.hud.getCreationWindow();
-        Object progressBar = ReflectionUtil.getPrivateField(creationWindow, ReflectionUtil.getField(creationWindow.getClass(), "progressBar"));
+        registerInventoryListener(toolIndex);
         while (isActive()) {
             waitOnPause();
-            if (targets.size() == 0 && !groundMode) {
+            WorldSnapshot snapshot = WorldSnapshot.get();
+            if (!toolIndex.hasTargets() && !groundMode) {
                 sleep(timeout);
                 continue;
             }
-            float progress = ReflectionUtil.getPrivateField(progressBar, ReflectionUtil.getField(progressBar.getClass(), "progress"));
-            float stamina = Mod.hud.getWorld().getPlayer().getStamina();
-            float damage = Mod.hud.getWorld().getPlayer().getDamage();
+            float stamina = snapshot.stamina;
+            float damage = snapshot.damage;
             boolean improveInitiated = false;
-            if ((stamina + damage) > staminaThreshold && progress == 0f && creationWindow.getActionInUse() == 0) {
+            if ((stamina + damage) > staminaThreshold && snapshot.isIdle()) {
+                toolIndex.applyChanges();
+                if (!groundMode && forge != null)
+                    rotateForge();
+                else if (!forgeRotationItems.isEmpty())
+                    stopForgeRotation();
                 if (!groundMode) {
-                    List<InventoryMetaItem> selectedItems = new ArrayList<>();
-                    for (InventoryListComponent ilc : targets) {
-                        List<InventoryMetaItem> targetSelectedItems = Utils.getSelectedItems(ilc, false, true);
-                        if (targetSelectedItems != null)
-                            selectedItems.addAll(targetSelectedItems);
-                    }
-                    if (selectedItems.size() == 0) {
+                    if (!toolIndex.hasCandidates()) {
                         Utils.consolePrint("No selected items!");
                         sleep(timeout);
                         continue;
                     }
-                    selectedItems.sort(Comparator.comparingDouble(item -> item.getQuality() * (1 - item.getDamage() / 100)));
-                    for (InventoryMetaItem itemToImprove : selectedItems) {
-                        if (itemToImprove == null || itemToImprove.getImproveIconId() < 0) {
+                    //items are taken from the queue in order of their effective quality and given back after the pass
+                    List<InventoryMetaItem> polledItems = new ArrayList<>();
+                    InventoryMetaItem itemToImprove;
+                    int actionLimit = pipelining ? ActionSlots.getShare() : 1;
+                    int queuedActions = 0;
+                    while (queuedActions < actionLimit && (itemToImprove = toolIndex.pollCandidate()) != null) {
+                        polledItems.add(itemToImprove);
+                        if (itemToImprove.getImproveIconId() < 0) {
                             continue;
                         }
                         Tool tool = findToolForImprove(itemToImprove);
@@ -129,26 +156,34 @@ public class ImproverBot extends BotBase {
                             Utils.consolePrint("Can't find a tool to improve " + itemToImprove.getBaseName() + " " + itemToImprove.getId());
                             continue;
                         }
-                        if (tool.itemId == 0 || !tool.fixed) {
+                        //queued actions may consume the item of the tool, so it is searched for every queued action
+                        if (!toolIndex.isResolved(tool, itemToImprove.getWeight()) || queuedActions > 0 && !tool.fixed) {
                             boolean toolItemFound = assignItemForTool(tool, itemToImprove.getWeight());
                             if (!toolItemFound)
                                 continue;
                         }
                         if (MaterialUtilities.isMetal(itemToImprove.getMaterialId())) {
-                            if (itemToImprove.getTemperature() < 5) {
-                                Utils.consolePrint("Item \"" + itemToImprove.getBaseName() + "\" isn't hot enough");
+                            if (itemToImprove.getTemperature() < MIN_IMPROVE_TEMPERATURE) {
+                                //the item will be reheated in the forge
+                                if (forge == null)
+                                    Utils.consolePrint("Item \"" + itemToImprove.getBaseName() + "\" isn't hot enough");
                                 continue;
                             }
                         }
 
-                        if (itemToImprove.getDamage() > 0)
+                        if (itemToImprove.getDamage() > 0) {
+                            if (queuedActions > 0 && queuedActions + 2 > actionLimit)
+                                break;
                             Mod.hud.sendAction(PlayerAction.REPAIR, itemToImprove.getId());
+                            queuedActions++;
+                        }
                         improveActionFinished = false;
                         improveInitiated = true;
                         Mod.hud.getWorld().getServerConnection().sendAction(tool.itemId,
                                 new long[]{itemToImprove.getId()}, PlayerAction.IMPROVE);
-                        break;
+                        queuedActions++;
                     }
+                    toolIndex.requeueCandidates(polledItems);
                 } else {
                     PickableUnit pickableUnit = ReflectionUtil.getPrivateField(Mod.hud.getSelectBar(),
                             ReflectionUtil.getField(Mod.hud.getSelectBar().getClass(), "selectedUnit"));
@@ -183,10 +218,10 @@ public class ImproverBot extends BotBase {
 
                     improveActionFinished = false;
                     Mod.hud.sendAction(PlayerAction.REPAIR, pickableUnit.getId());
-                    for (Tool tool : getToolsBySkill(toolSkill)) {
-                        if (tool.itemId == 0 || !tool.fixed) {
+                    for (Tool tool : toolIndex.getTools(toolSkill)) {
+                        if (!toolIndex.isResolved(tool, -1)) {
                             //process metal lumps
-                            if (MaterialUtilities.isMetal(materialId) && !tool.name.contains(MaterialUtilities.getMaterialString(materialId)) && tool.name.contains("lump"))
+                            if (!ToolIndex.fitsMaterial(tool, materialId))
                                 continue;
 
                             boolean toolItemFound = assignItemForTool(tool, -1);
@@ -203,6 +238,7 @@ public class ImproverBot extends BotBase {
                 if (improveInitiated) {
                     int counter = 0;
                     while (!improveActionFinished && counter++ < 50) {
+                        waitOnPause();
                         sleep(200);
                     }
                     if (!improveActionFinished)
@@ -213,35 +249,97 @@ public class ImproverBot extends BotBase {
         }
     }
 
-    private List<Tool> getToolsBySkill(ToolSkill toolSkill) {
-        if (toolSkill == null || toolSkill == ToolSkill.UNKNOWN)
-            return tools;
-        List<Tool> toolsBySkill = new ArrayList<>();
-        for (Tool tool : tools) {
-            if (tool.toolSkills.contains(toolSkill))
-                toolsBySkill.add(tool);
-        }
-        return toolsBySkill;
-    }
-
     private Tool findToolForImprove(InventoryMetaItem item) {
         if (item == null) return null;
-        Tool returnTool = null;
         if (!this.groundMode)
             toolSkill = ToolSkill.getSkillForItem(item.getMaterialId());
+        return toolIndex.find(item, toolSkill);
+    }
 
-        for (Tool tool : getToolsBySkill(toolSkill))
-            if (tool.improveIconId == item.getImproveIconId()) {
-                if (MaterialUtilities.isMetal(item.getMaterialId()) && !tool.name.contains(MaterialUtilities.getMaterialString(item.getMaterialId())) && tool.name.contains("lump"))
-                    continue;
-
-                if (tool.itemId == 0) {
-                    returnTool = tool;
+    /**
+     * Sends cooled metal items to the forge and takes the hottest ones out,
+     * so that the configured number of hot items is always ready to be improved
+     */
+    private void rotateForge() {
+        if (Math.abs(System.currentTimeMillis() - lastForgeRotation) < FORGE_ROTATION_TIMEOUT)
+            return;
+        long now = System.currentTimeMillis();
+        lastForgeRotation = now;
+        Set<Long> forgeItemIds = new HashSet<>();
+        List<InventoryMetaItem> forgeItems = Utils.getSelectedItems(forge, true, true);
+        for (InventoryMetaItem item : forgeItems)
+            forgeItemIds.add(item.getId());
+        movesToForge.entrySet().removeIf(move -> move.getValue() <= now || forgeItemIds.contains(move.getKey()));
+        movesFromForge.entrySet().removeIf(move -> move.getValue() <= now || toolIndex.getSource(move.getKey()) != null);
+        pruneForgeRotationItems(forgeItemIds);
+        int itemsInForge = movesToForge.size() - movesFromForge.size();
+        for (Long itemId : forgeItemIds)
+            if (forgeRotationItems.containsKey(itemId))
+                itemsInForge++;
+        List<Long> coldItemIds = new ArrayList<>();
+        int hotItemsCount = 0;
+        for (InventoryMetaItem item : toolIndex.getCandidates()) {
+            if (!MaterialUtilities.isMetal(item.getMaterialId()) || movesToForge.containsKey(item.getId()))
+                continue;
+            if (item.getTemperature() >= MIN_IMPROVE_TEMPERATURE) {
+                hotItemsCount++;
+                continue;
+            }
+            if (itemsInForge + coldItemIds.size() >= MAX_FORGE_ITEMS)
+                continue;
+            if (!forgeRotationItems.containsKey(item.getId())) {
+                InventoryListComponent source = toolIndex.getSource(item.getId());
+                InventoryMetaItem sourceRootItem = source == null ? null : Utils.getRootItem(source);
+                if (sourceRootItem == null)
                     continue;
-                }
-                return tool;
+                forgeRotationItems.put(item.getId(), sourceRootItem.getId());
+                toolIndex.pin(item.getId());
             }
-        return returnTool;
+            coldItemIds.add(item.getId());
+        }
+        if (coldItemIds.size() > 0) {
+            Mod.hud.getWorld().getServerConnection().sendMoveSomeItems(forgeId,
+                    coldItemIds.stream().mapToLong(Long::longValue).toArray());
+            for (Long itemId : coldItemIds)
+                movesToForge.put(itemId, now + FORGE_MOVE_TIMEOUT);
+            Utils.consolePrint("Moving " + coldItemIds.size() + " items to the forge");
+        }
+        hotItemsCount += movesFromForge.size();
+        if (hotItemsCount >= forgeRotationSize)
+            return;
+        List<InventoryMetaItem> heatedItems = new ArrayList<>();
+        for (InventoryMetaItem item : forgeItems)
+            if (forgeRotationItems.containsKey(item.getId()) && !movesFromForge.containsKey(item.getId())
+                    && item.getTemperature() >= forgeTemperature)
+                heatedItems.add(item);
+        heatedItems.sort(Comparator.comparingInt(InventoryMetaItem::getTemperature).reversed());
+        for (InventoryMetaItem item : heatedItems.subList(0, Math.min(heatedItems.size(), forgeRotationSize - hotItemsCount))) {
+            Mod.hud.getWorld().getServerConnection().sendMoveSomeItems(forgeRotationItems.get(item.getId()), new long[]{item.getId()});
+            movesFromForge.put(item.getId(), now + FORGE_MOVE_TIMEOUT);
+        }
+    }
+
+    /**
+     * Forgets the rotated items that are neither in the targets nor in the forge, e.g. taken away by the player
+     */
+    private void pruneForgeRotationItems(Set<Long> forgeItemIds) {
+        Iterator<Long> iterator = forgeRotationItems.keySet().iterator();
+        while (iterator.hasNext()) {
+            long itemId = iterator.next();
+            if (forgeItemIds.contains(itemId) || toolIndex.getSource(itemId) != null
+                    || movesToForge.containsKey(itemId) || movesFromForge.containsKey(itemId))
+                continue;
+            iterator.remove();
+            toolIndex.unpin(itemId);
+        }
+    }
+
+    private void stopForgeRotation() {
+        for (Long itemId : forgeRotationItems.keySet())
+            toolIndex.unpin(itemId);
+        forgeRotationItems.clear();
+        movesToForge.clear();
+        movesFromForge.clear();
     }
 
     private void printShortToolInfo(InventoryMetaItem toolItem) {
@@ -274,13 +372,13 @@ public class ImproverBot extends BotBase {
             return false;
         }
         //check lump heat
-        if (MaterialUtilities.isMetal(toolItem.getMaterialId()) && toolItem.getBaseName().contains("lump")) {
-            if (toolItem.getTemperature() < 5) {
+        if (MaterialUtilities.isMetal(toolItem.getMaterialId()) && ItemClassifier.is(toolItem, ItemClassifier.Category.LUMP)) {
+            if (toolItem.getTemperature() < MIN_IMPROVE_TEMPERATURE) {
                 Utils.consolePrint("The \"" + toolItem.getDisplayName() + "\" isn't hot enough");
                 return false;
             }
         }
-        tool.itemId = toolItem.getId();
+        toolIndex.setResolved(tool, toolItem.getId(), weight);
         if (tool.fixed)
             printShortToolInfo(toolItem);
         return true;
@@ -322,10 +420,11 @@ public class ImproverBot extends BotBase {
             return;
         }
         InventoryMetaItem instrument = selectedItems.get(0);
+        List<Tool> tools = toolIndex.getTools(ToolSkill.UNKNOWN);
         for (Tool tool : tools) {
             if (instrument.getBaseName().contains(tool.name)) {
                 printShortToolInfo(instrument);
-                tool.itemId = instrument.getId();
+                toolIndex.setResolved(tool, instrument.getId(), -1);
                 for (Tool anotherTool : tools)
                     if (!anotherTool.equals(tool) && anotherTool.improveIconId == tool.improveIconId)
                         anotherTool.itemId = 0;
@@ -385,6 +484,69 @@ public class ImproverBot extends BotBase {
         Utils.consolePrint("Current threshold for stamina is " + staminaThreshold);
     }
 
+    private void togglePipelining() {
+        pipelining = !pipelining;
+        if (pipelining) {
+            Utils.consolePrint("Improves of up to " + ActionSlots.peekShare(this) + " items will be queued at once");
+        } else
+            Utils.consolePrint("Pipelining is off");
+    }
+
+    private void toggleForge() {
+        if (forge != null) {
+            //the rotated items are unpinned by the bot thread
+            forge = null;
+            Utils.consolePrint("Forge rotation is off");
+            return;
+        }
+        WurmComponent forgeComponent = Utils.getTargetComponent(c -> c instanceof ItemListWindow);
+        if (forgeComponent == null) {
+            Utils.consolePrint("Didn't find the forge window");
+            return;
+        }
+        try {
+            InventoryListComponent forgeListComponent = ReflectionUtil.getPrivateField(forgeComponent,
+                    ReflectionUtil.getField(forgeComponent.getClass(), "component"));
+            InventoryMetaItem forgeItem = Utils.getRootItem(forgeListComponent);
+            if (forgeItem == null) {
+                Utils.consolePrint("Unable to get the forge information");
+                return;
+            }
+            forgeId = forgeItem.getId();
+            forge = forgeListComponent;
+            Utils.consolePrint("Metal items will be reheated in " + forgeItem.getBaseName()
+                    + ". " + forgeRotationSize + " hot items will be kept out of the forge");
+        } catch (Exception e) {
+            Utils.consolePrint("Unable to get the forge information");
+        }
+    }
+
+    private void setForgeRotationSize(String[] input) {
+        if (input == null || input.length != 1) {
+            printInputKeyUsageString(ImproverBot.InputKey.fn);
+            return;
+        }
+        try {
+            forgeRotationSize = Math.max(1, Integer.parseInt(input[0]));
+            Utils.consolePrint(forgeRotationSize + " hot items will be kept out of the forge");
+        } catch (NumberFormatException e) {
+            Utils.consolePrint("Wrong value!");
+        }
+    }
+
+    private void setForgeTemperature(String[] input) {
+        if (input == null || input.length != 1) {
+            printInputKeyUsageString(ImproverBot.InputKey.ft);
+            return;
+        }
+        try {
+            forgeTemperature = Integer.parseInt(input[0]);
+            Utils.consolePrint("Items will be taken out of the forge with temperature " + forgeTemperature + " or higher");
+        } catch (NumberFormatException e) {
+            Utils.consolePrint("Wrong value!");
+        }
+    }
+
     private void addTarget() {
         WurmComponent inventoryComponent = Utils.getTargetComponent(c -> c instanceof ItemListWindow || c instanceof InventoryWindow);
         if (inventoryComponent == null) {
@@ -399,7 +561,7 @@ public class ImproverBot extends BotBase {
             Utils.consolePrint("Unable to get inventory information");
             return;
         }
-        targets.add(ilc);
+        toolIndex.addTarget(ilc);
         Utils.consolePrint("A new inventory was added");
     }
 
@@ -410,7 +572,12 @@ public class ImproverBot extends BotBase {
         ls("List available improving skills", ""),
         ss("Set the skill. Only tools from that skill will be used. You can list available skills using \"" + ls.name() + "\" key", "skill_abbreviation"),
         g("Toggle the ground mode. Set the skill first by \"" + ss.name() + "\" key", ""),
-        ci("Change previously chosen instrument by tool selected in player's inventory", "");
+        ci("Change previously chosen instrument by tool selected in player's inventory", ""),
+        pl("Toggle the pipelining. Improve actions for several items are queued at once to fill the action queue", ""),
+        fo("Toggle the forge rotation. The forge window must be under the mouse cursor. " +
+                "Metal items that aren't hot enough are moved to the forge and the hottest ones are taken back", ""),
+        fn("Set the number of hot items the bot keeps out of the forge", "count"),
+        ft("Set the temperature the items are taken out of the forge with", "temperature(integer value)");
 
         private final String description;
         private final String usage;
@@ -483,6 +650,9 @@ public class ImproverBot extends BotBase {
         boolean fixed;
         boolean exactName;
         Set<ToolSkill> toolSkills;
+        //false when the inventory has changed since the item of a consumed tool was chosen
+        boolean resolved;
+        float resolvedWeight;
 
         Tool(int improveIconId, String name, boolean fixed, boolean exactName, Set<ToolSkill> toolSkills) {
             this.improveIconId = improveIconId;
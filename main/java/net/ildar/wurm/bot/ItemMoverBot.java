@@ -6,7 +6,10 @@ import com.wurmonline.client.renderer.gui.InventoryWindow;
 import com.wurmonline.client.renderer.gui.ItemListWindow;
 import com.wurmonline.client.renderer.gui.WurmComponent;
 import net.ildar.wurm.BotRegistration;
+import net.ildar.wurm.ContainerFillPlanner;
+import net.ildar.wurm.ItemReservations;
 import net.ildar.wurm.Mod;
+import net.ildar.wurm.Pipeline;
 import net.ildar.wurm.Utils;
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 
@@ -19,7 +22,7 @@ public class ItemMoverBot extends BotBase {
     private long target;
     private InventoryListComponent targetComponent;
     private String containerName;
-    private int containerVolume = 100;
+    private final ContainerFillPlanner containerFillPlanner = new ContainerFillPlanner(100, ContainerFillPlanner::countChildren);
     private boolean notMoveRares = true;
     private String lastItemName;
     private boolean onlyFirstLevelItems = true;
@@ -64,38 +67,36 @@ public class ItemMoverBot extends BotBase {
                             itemsToMove.add(invItem);
                     }
                 }
+                itemsToMove = ItemReservations.reserve(itemsToMove, ItemReservations.DEFAULT_TTL);
                 if (itemsToMove.size() > 0) {
                     long[] sources = Utils.getItemIds(itemsToMove);
                     switch (targetType) {
                         case Item:
                             Mod.hud.getWorld().getServerConnection().sendMoveSomeItems(target, sources);
+                            signal(Pipeline.Signal.PROGRESS);
                             break;
                         case ContainerRoot:
                             InventoryMetaItem rootItem = Utils.getRootItem(targetComponent);
-                            if (rootItem != null)
+                            if (rootItem != null) {
                                 Mod.hud.getWorld().getServerConnection().sendMoveSomeItems(rootItem.getId(), sources);
-                            else
+                                signal(Pipeline.Signal.PROGRESS);
+                            } else
                                 Utils.consolePrint("Unable to move items to the target container");
                             break;
                         case Containers:
                             List<InventoryMetaItem> containers = Utils.getInventoryItems(targetComponent, containerName);
                             if (containers != null && containers.size() > 0) {
-                                for (InventoryMetaItem container : containers)
-                                    if (container.getChildren().size() < containerVolume) {
-                                        int quantityToMove = Math.min(containerVolume - container.getChildren().size(), sources.length);
-                                        Mod.hud.getWorld().getServerConnection().sendMoveSomeItems(
-                                                container.getId(), Arrays.copyOfRange(sources, 0, quantityToMove));
-                                        sources = Arrays.copyOfRange(sources, quantityToMove, sources.length);
-                                        if (sources.length == 0)
-                                            break;
-                                    }
-                                if (sources.length > 0)
+                                if (containerFillPlanner.move(containers, sources) > 0) {
                                     Utils.consolePrint("All containers are full!");
+                                    signal(Pipeline.Signal.OUTPUT_FULL);
+                                } else
+                                    signal(Pipeline.Signal.PROGRESS);
                             } else
                                 Utils.consolePrint("Didn't find any \"" + containerName + "\" containers inside target container");
                             break;
                     }
-                }
+                } else
+                    signal(Pipeline.Signal.NO_INPUT);
                 sleep(timeout);
             } else
                 sleep(1000);
@@ -172,7 +173,8 @@ public class ItemMoverBot extends BotBase {
             return;
         }
         try {
-            containerVolume = Integer.parseInt(input[0]);
+            int containerVolume = Integer.parseInt(input[0]);
+            containerFillPlanner.setCapacity(containerVolume);
             Utils.consolePrint("Maximum number of items inside containers was set to " + containerVolume);
         } catch (Exception e) {
             Utils.consolePrint("Wrong item number value!");
@@ -198,6 +200,7 @@ public class ItemMoverBot extends BotBase {
                     ReflectionUtil.getField(wurmComponent.getClass(), "component"));
             this.containerName = newContainer.toString();
             targetType = TargetType.Containers;
+            containerFillPlanner.invalidateAll();
             Utils.consolePrint("New target component was set with container \"" + containerName + "\"");
         } catch (Exception e) {
             Utils.consolePrint("Error on getting container information");
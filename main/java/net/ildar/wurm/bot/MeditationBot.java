@@ -1,11 +1,12 @@
 package net.ildar.wurm.bot;
 
 import com.wurmonline.client.renderer.PickableUnit;
-import com.wurmonline.client.renderer.gui.CreationWindow;
 import com.wurmonline.shared.constants.PlayerAction;
+import net.ildar.wurm.ActionRequest;
 import net.ildar.wurm.BotRegistration;
 import net.ildar.wurm.Mod;
 import net.ildar.wurm.Utils;
+import net.ildar.wurm.WorldSnapshot;
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 
 public class MeditationBot extends BotBase {
@@ -13,7 +14,6 @@ public class MeditationBot extends BotBase {
     private long repairTimeout;
     private float staminaThreshold;
     private int clicks = 3;
-    private boolean repairInitiated;
 
     public MeditationBot() {
         registerInputHandler(MeditationBot.InputKey.s, this::setStaminaThreshold);
@@ -39,29 +39,27 @@ public class MeditationBot extends BotBase {
         long carpetId = pickableUnit.getId();
         setRepairTimeout(60000);
         setStaminaThreshold(0.5f);
-        registerEventProcessors();
-        CreationWindow creationWindow = Mod.hud.getCreationWindow();
-        Object progressBar = ReflectionUtil.getPrivateField(creationWindow,
-                ReflectionUtil.getField(creationWindow.getClass(), "progressBar"));
         PlayerAction meditationAction = new PlayerAction("", (short) 384, PlayerAction.ANYTHING);
         while (isActive()) {
             waitOnPause();
             if (Math.abs(lastRepair - System.currentTimeMillis()) > repairTimeout) {
-                repairInitiated = false;
-                int count = 0;
-                while (!repairInitiated && count++ < 30) {
-                    Mod.hud.sendAction(PlayerAction.REPAIR, carpetId);
-                    sleep(1000);
-                }
-                if (repairInitiated) {
+                ActionRequest.Result result = new ActionRequest(() -> Mod.hud.sendAction(PlayerAction.REPAIR, carpetId))
+                        .startedOn(message -> message.contains("You repair")
+                                || message.contains("You start repairing")
+                                || message.contains("doesn't need repairing")
+                                || message.contains("you will start repairing"))
+                        .retry(1000, 30)
+                        .pausedWhile(this::isPaused)
+                        .awaitStart();
+                if (result == ActionRequest.Result.STARTED) {
                     lastRepair = System.currentTimeMillis();
                 } else
                     Utils.consolePrint("Couldn't repair a meditation rug!");
             }
-            float stamina = Mod.hud.getWorld().getPlayer().getStamina();
-            float damage = Mod.hud.getWorld().getPlayer().getDamage();
-            float progress = ReflectionUtil.getPrivateField(progressBar,
-                    ReflectionUtil.getField(progressBar.getClass(), "progress"));
+            WorldSnapshot snapshot = WorldSnapshot.get();
+            float stamina = snapshot.stamina;
+            float damage = snapshot.damage;
+            float progress = snapshot.progress;
             if ((stamina + damage) > staminaThreshold && progress == 0f) {
                 for (int i = 0; i < clicks; i++)
                     Mod.hud.sendAction(meditationAction, carpetId);
@@ -70,13 +68,6 @@ public class MeditationBot extends BotBase {
         }
     }
 
-    private void registerEventProcessors() {
-        registerEventProcessor(message -> message.contains("You repair")
-                || message.contains("You start repairing")
-                || message.contains("doesn't need repairing")
-                || message.contains("you will start repairing"), () -> repairInitiated = true);
-    }
-
     private void setRepairTimeout(String[] input) {
         if (input == null || input.length != 1) {
             printInputKeyUsageString(MeditationBot.InputKey.rt);
@@ -10,8 +10,15 @@ import com.wurmonline.mesh.Tiles;
 import com.wurmonline.shared.constants.PlayerAction;
 import javafx.util.Pair;
 import net.ildar.wurm.BotRegistration;
+import net.ildar.wurm.CombinePlanner;
+import net.ildar.wurm.ItemClassifier;
+import net.ildar.wurm.ItemReservations;
 import net.ildar.wurm.Mod;
+import net.ildar.wurm.ToolMaintenance;
+import net.ildar.wurm.ToolSelector;
 import net.ildar.wurm.Utils;
+import net.ildar.wurm.WindowRegistry;
+import net.ildar.wurm.WorldSnapshot;
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 
 import java.util.*;
@@ -25,12 +32,15 @@ public class MinerBot extends BotBase {
     private MiningMode miningMode = MiningMode.Unknown;
     private float staminaThreshold;
     private InventoryMetaItem pickaxe;
+    private InventoryMetaItem activePickaxe;
+    private final ToolSelector pickaxeSelector = new ToolSelector("pickaxe");
     private long fixedTileId;
     private int clicks = 2;
     private boolean shardsCombining;
     private String shards = "rock shards";
     private String fuel = "kindling";
     private long fuellingTimeout = 300000;
+    private int fuellingTemperature = 5;
     private long lastFuelling;
     private boolean moving;
     private int movingForwardBias;
@@ -58,6 +68,7 @@ public class MinerBot extends BotBase {
         registerInputHandler(MinerBot.InputKey.sp, input -> setPile());
         registerInputHandler(MinerBot.InputKey.ssm, input -> setSmelter());
         registerInputHandler(MinerBot.InputKey.sft, this::setFuellingTimeout);
+        registerInputHandler(MinerBot.InputKey.sftm, this::setFuellingTemperature);
         registerInputHandler(MinerBot.InputKey.sfn, this::setFuelName);
         registerInputHandler(MinerBot.InputKey.v, input -> toggleVerboseMode());
         registerInputHandler(MinerBot.InputKey.dir, this::handleDirectionChange);
@@ -80,7 +91,9 @@ public class MinerBot extends BotBase {
     @Override
     public void work() throws Exception {
         staminaThreshold = 0.96f;
-        pickaxe = Utils.getInventoryItem("pickaxe");
+        registerInventoryListener(pickaxeSelector);
+        pickaxe = pickaxeSelector.get();
+        activePickaxe = pickaxe;
         if (pickaxe == null) {
             Utils.consolePrint("You don't have a pickaxe!");
             deactivate();
@@ -95,20 +108,14 @@ public class MinerBot extends BotBase {
         while (isActive()) {
             waitOnPause();
             if (shardsCombining) {
-                List<ItemListWindow> piles = new ArrayList<>();
-                for (WurmComponent wurmComponent : Mod.getInstance().components)
-                    if (wurmComponent instanceof ItemListWindow
-                            && !(wurmComponent instanceof InventoryWindow)) {
-                        if (Utils.getRootItem(ReflectionUtil.getPrivateField(wurmComponent,
-                                ReflectionUtil.getField(wurmComponent.getClass(), "component"))).getBaseName().toLowerCase().contains("pile of"))
-                            piles.add((ItemListWindow) wurmComponent);
-                    }
+                List<WindowRegistry.Entry> piles = WindowRegistry.find("pile of");
 
                 ServerConnectionListenerClass sscc = Mod.hud.getWorld().getServerConnection().getServerConnectionListener();
                 Map<Long, GroundItemCellRenderable> groundItems = ReflectionUtil.getPrivateField(sscc,
                         ReflectionUtil.getField(sscc.getClass(), "groundItems"));
-                int tileX = Mod.hud.getWorld().getPlayerCurrentTileX();
-                int tileY = Mod.hud.getWorld().getPlayerCurrentTileY();
+                WorldSnapshot tileSnapshot = WorldSnapshot.get();
+                int tileX = tileSnapshot.tileX;
+                int tileY = tileSnapshot.tileY;
                 List<Long> closePileIds = new ArrayList<>();
                 for (Map.Entry<Long, GroundItemCellRenderable> entry : new HashSet<>(groundItems.entrySet())) {
                     GroundItemCellRenderable groundItem = entry.getValue();
@@ -118,32 +125,17 @@ public class MinerBot extends BotBase {
                     int itemY = (int) (groundItemData.getY() / 4);
                     if (itemX == tileX && itemY == tileY && groundItem.getHoverName().toLowerCase().contains("pile of ")) {
                         closePileIds.add(groundItem.getId());
-                        if (piles.stream().noneMatch(pile -> {
-                            try {
-                                InventoryListComponent ilc = ReflectionUtil.getPrivateField(pile,
-                                        ReflectionUtil.getField(pile.getClass(), "component"));
-                                InventoryMetaItem rootItem = Utils.getRootItem(ilc);
-                                if (rootItem != null)
-                                    return rootItem.getId() == groundItem.getId();
-                            } catch (IllegalAccessException | NoSuchFieldException e) {
-                                e.printStackTrace();
-                            }
-                            return false;
-                        })) {
-                            if (verbose)
-                                Utils.consolePrint("Opening " + groundItem.getHoverName() + " " + groundItem.getId());
-                            Mod.hud.sendAction(PlayerAction.OPEN, groundItem.getId());
-                        }
+                        if (getContainerWindows().open(groundItem.getId()) == null && verbose)
+                            Utils.consolePrint("Opening " + groundItem.getHoverName() + " " + groundItem.getId());
                     }
                 }
                 float freeSpace = Utils.getMaxWeight() - Utils.getTotalWeight();
                 List<InventoryMetaItem> itemsToTake = new ArrayList<>();
-                for (ItemListWindow wurmComponent : piles) {
-                    InventoryListComponent ilc = ReflectionUtil.getPrivateField(wurmComponent,
-                            ReflectionUtil.getField(wurmComponent.getClass(), "component"));
-                    InventoryMetaItem rootItem = Utils.getRootItem(ilc);
+                for (WindowRegistry.Entry pile : piles) {
+                    InventoryListComponent ilc = pile.getComponent();
+                    InventoryMetaItem rootItem = pile.getRootItem();
                     if (!closePileIds.contains(rootItem.getId())) {
-                        Mod.hud.sendAction(PlayerAction.CLOSE, rootItem.getId());
+                        getContainerWindows().close(rootItem.getId());
                         continue;
                     }
                     List<InventoryMetaItem> componentItems = Utils.getInventoryItems(ilc, shards);
@@ -167,23 +159,20 @@ public class MinerBot extends BotBase {
                 }
                 List<InventoryMetaItem> invShards = Utils.getInventoryItems(shards);
                 if (invShards.size() > 1) {
-                    long[] ids = new long[invShards.size()];
-                    for (int i = 0; i < invShards.size(); i++)
-                        ids[i] = invShards.get(i).getId();
-                    if (verbose) Utils.consolePrint("Combining " + Arrays.toString(ids));
-                    Mod.hud.getWorld().getServerConnection().sendAction(
-                            ids[0], ids, PlayerAction.COMBINE);
+                    int actions = CombinePlanner.combine(invShards);
+                    if (verbose) Utils.consolePrint("Combining " + invShards.size() + " shards with " + actions + " actions");
                 } else if (invShards.size() == 1) {
                     Mod.hud.sendAction(PlayerAction.DROP, invShards.get(0).getId());
                 }
             }
 
-            if (Mod.hud.getWorld().getPlayerLayer() >= 0) {
+            WorldSnapshot snapshot = WorldSnapshot.get();
+            if (snapshot.layer >= 0) {
                 sleep(timeout);
                 continue;
             }
-            float stamina = Mod.hud.getWorld().getPlayer().getStamina();
-            float damage = Mod.hud.getWorld().getPlayer().getDamage();
+            float stamina = snapshot.stamina;
+            float damage = snapshot.damage;
             SelectBarRenderer sbr = ReflectionUtil.getPrivateField(Mod.hud.getSelectBar(),
                     ReflectionUtil.getField(Mod.hud.getSelectBar().getClass(), "renderer"));
             Object wpb = ReflectionUtil.getPrivateField(sbr,
@@ -192,8 +181,14 @@ public class MinerBot extends BotBase {
                     ReflectionUtil.getField(wpb.getClass(), "progress"));
             if ((stamina + damage) > staminaThreshold && progress == 0f) {
                 boolean actionTaken = false;
-                if (pickaxe.getDamage() > 10)
-                    Mod.hud.sendAction(PlayerAction.REPAIR, pickaxe.getId());
+                pickaxe = pickaxeSelector.get();
+                if (pickaxe == null) {
+                    Utils.consolePrint("You don't have a pickaxe!");
+                    deactivate();
+                    return;
+                }
+                //a spare pickaxe is used while the main one is being repaired
+                activePickaxe = ToolMaintenance.getUsable(pickaxe, ToolMaintenance.DEFAULT_THRESHOLD);
                 switch (miningMode) {
                     case SelectedTile: {
                         PickableUnit tile = ReflectionUtil.getPrivateField(Mod.hud.getSelectBar(),
@@ -280,43 +275,49 @@ public class MinerBot extends BotBase {
                     Thread.sleep(100);
                     Utils.stabilizePlayer();
                 }
+                InventoryMetaItem smelterItem = smelting ? smeltingOptions.getSmelterItem() : null;
+                if (smelting && smelterItem == null) {
+                    Utils.consolePrint("Can't find the smelter. Smelting is off");
+                    smelting = false;
+                }
                 if (smelting) {
-                    List<InventoryMetaItem> lumps = Utils.getInventoryItems(smeltingOptions.smelter, "lump")
-                            .stream()
-                            .filter(item -> item.getRarity() == 0)
-                            .collect(Collectors.toList());
+                    List<InventoryMetaItem> lumps = ItemReservations.reserve(
+                            ItemClassifier.filter(Utils.getSelectedItems(smeltingOptions.smelter, true, true), ItemClassifier.Category.LUMP),
+                            ItemReservations.DEFAULT_TTL);
                     if (lumps.size() > 0) {
-                        for (int i = smeltingOptions.containers.size() - 1; i >= 0; i--) {
-                            List<Long> moveList = new ArrayList<>();
-                            for (int j = 0; j < lumps.size(); j++) {
-                                if (lumps.get(j).getQuality() >= smeltingOptions.containers.get(i).getValue())
-                                    moveList.add(lumps.get(j).getId());
-                            }
-                            if (moveList.size() > 0) {
-                                long[] moveItemIds = new long[moveList.size()];
-                                for (int k = 0; k < moveList.size(); k++)
-                                    moveItemIds[k] = moveList.get(k);
-                                Mod.hud.getWorld().getServerConnection()
-                                        .sendMoveSomeItems(smeltingOptions.containers.get(i).getKey(), moveItemIds);
-                                lumps.removeIf(item -> moveList.contains(item.getId()));
-                            }
+                        List<List<Long>> moveLists = smeltingOptions.route(lumps);
+                        for (int i = 0; i < moveLists.size(); i++) {
+                            List<Long> moveList = moveLists.get(i);
+                            if (moveList == null)
+                                continue;
+                            long[] moveItemIds = new long[moveList.size()];
+                            for (int k = 0; k < moveList.size(); k++)
+                                moveItemIds[k] = moveList.get(k);
+                            Mod.hud.getWorld().getServerConnection()
+                                    .sendMoveSomeItems(smeltingOptions.containerIds[i], moveItemIds);
                         }
                     }
-                    List<InventoryMetaItem> ores = Utils.getInventoryItems(smeltingOptions.pile, "ore");
+                    List<InventoryMetaItem> ores = ItemReservations.reserve(
+                            ItemClassifier.filter(Utils.getSelectedItems(smeltingOptions.pile, true, true), ItemClassifier.Category.ORE),
+                            ItemReservations.DEFAULT_TTL);
                     if (ores.size() > 0) {
                         long[] oreIds = Utils.getItemIds(ores);
                         Mod.hud.getWorld().getServerConnection()
-                                .sendMoveSomeItems(Utils.getRootItem(smeltingOptions.smelter).getId(), oreIds);
+                                .sendMoveSomeItems(smelterItem.getId(), oreIds);
                     }
 
-                    if (Math.abs(lastFuelling - System.currentTimeMillis()) > fuellingTimeout) {
+                    //the fuel needs some time to heat the smelter up, so the temperature is not checked right after fuelling
+                    if (smelterItem.getTemperature() < fuellingTemperature
+                            && Math.abs(lastFuelling - System.currentTimeMillis()) > fuellingTimeout) {
                         lastFuelling = System.currentTimeMillis();
                         InventoryMetaItem item = Utils.getInventoryItem(fuel);
-                        if (item != null)
+                        if (item != null) {
+                            if (verbose)
+                                Utils.consolePrint("Fuelling the smelter with temperature " + smelterItem.getTemperature());
                             Mod.hud.getWorld().getServerConnection().sendAction(item.getId(),
-                                    new long[]{Utils.getRootItem(smeltingOptions.smelter).getId()},
+                                    new long[]{smelterItem.getId()},
                                     new PlayerAction("", (short) 117, PlayerAction.ANYTHING));
-                        else
+                        } else
                             Utils.consolePrint("No fuel in inventory!");
                     }
                 }
@@ -364,6 +365,19 @@ public class MinerBot extends BotBase {
         }
     }
 
+    private void setFuellingTemperature(String[] input) {
+        if (input == null || input.length != 1) {
+            printInputKeyUsageString(MinerBot.InputKey.sftm);
+            return;
+        }
+        try {
+            fuellingTemperature = Integer.parseInt(input[0]);
+            Utils.consolePrint("The smelter will be fuelled when its temperature drops below " + fuellingTemperature);
+        } catch (NumberFormatException e) {
+            Utils.consolePrint("Invalid temperature value");
+        }
+    }
+
     private void setFuelName(String[] input) {
         if (input == null || input.length == 0) {
             printInputKeyUsageString(MinerBot.InputKey.sfn);
@@ -387,8 +401,7 @@ public class MinerBot extends BotBase {
             int y = Mod.hud.getWorld().getClient().getYMouse();
             long[] container = Mod.hud.getCommandTargetsFrom(x, y);
             if (container != null && container.length > 0) {
-                smeltingOptions.containers.add(new Pair<>(container[0], minQuality));
-                smeltingOptions.containers.sort(Comparator.comparingDouble(Pair::getValue));
+                smeltingOptions.addContainer(container[0], minQuality);
                 Utils.consolePrint("Added a new target with id - " + container[0] +
                         " and minimum quality - " + String.format("%.2f", minQuality));
             } else
@@ -406,8 +419,7 @@ public class MinerBot extends BotBase {
         try {
             long id = Long.parseLong(input[0]);
             float q = Float.parseFloat(input[1]);
-            smeltingOptions.containers.add(new Pair<>(id, q));
-            smeltingOptions.containers.sort(Comparator.comparingDouble(Pair::getValue));
+            smeltingOptions.addContainer(id, q);
             Utils.consolePrint("Added a new target with id - " + id +
                     " and minimum quality - " + String.format("%.2f", q));
         } catch (NumberFormatException e) {
@@ -430,7 +442,7 @@ public class MinerBot extends BotBase {
     private void toggleSmelting() {
         smelting = !smelting;
         if (smelting) {
-            if (smeltingOptions.smelter == null || smeltingOptions.pile == null || smeltingOptions.containers == null || smeltingOptions.containers.size() == 0) {
+            if (smeltingOptions.smelter == null || smeltingOptions.pile == null || smeltingOptions.containerIds.length == 0) {
                 Utils.consolePrint("You should set smelter, pile and containers first!");
                 smelting = false;
             } else
@@ -558,8 +570,9 @@ public class MinerBot extends BotBase {
 
     private void sendMineActions(int[] coords) {
         //wallside is 5 for north, 4 for west, 3 for south, 2 for east
-        int x = Mod.hud.getWorld().getPlayerCurrentTileX();
-        int y = Mod.hud.getWorld().getPlayerCurrentTileY();
+        WorldSnapshot snapshot = WorldSnapshot.get();
+        int x = snapshot.tileX;
+        int y = snapshot.tileY;
         int wallSide = 0;
         if (x != coords[0] && y != coords[1]) {
             Tiles.Tile westTileType = Mod.hud.getWorld().getCaveBuffer().getTileType(x - 1, y);
@@ -603,7 +616,7 @@ public class MinerBot extends BotBase {
 
         for (int i = 0; i < clicks; i++)
             Mod.hud.getWorld().getServerConnection().sendAction(
-                    pickaxe.getId(),
+                    activePickaxe.getId(),
                     new long[]{tileId},
                     direction.action);
     }
@@ -640,8 +653,7 @@ public class MinerBot extends BotBase {
                 Utils.consolePrint("");
                 return;
             }
-            smeltingOptions.containers.add(new Pair<>(rootItem.getId(), minQuality));
-            smeltingOptions.containers.sort(Comparator.comparingDouble(Pair::getValue));
+            smeltingOptions.addContainer(rootItem.getId(), minQuality);
             Utils.consolePrint("Added a new target with id - " + rootItem.getId() +
                     " and minimum quality - " + String.format("%.2f", minQuality));
 
@@ -659,6 +671,7 @@ public class MinerBot extends BotBase {
         try {
             smeltingOptions.smelter = ReflectionUtil.getPrivateField(smelter,
                     ReflectionUtil.getField(smelter.getClass(), "component"));
+            smeltingOptions.smelterItem = null;
             Utils.consolePrint("The smelter is set");
         } catch (IllegalAccessException | NoSuchFieldException e) {
             e.printStackTrace();
@@ -706,7 +719,8 @@ public class MinerBot extends BotBase {
         atid("Add the target with provided id for lumps with provided minimum quality", "id min_quality(0-100)"),
         sp("Set a pile(under the mouse cursor) for smelting ores", ""),
         ssm("Set a smelter(under the mouse cursor) for smelting ores", ""),
-        sft("Set a smelter fuelling timeout for smelting ores", "timeout(in milliseconds)"),
+        sft("Set the minimum delay between smelter fuellings for smelting ores", "timeout(in milliseconds)"),
+        sftm("Set the smelter temperature below which the bot adds fuel. Default is 5", "temperature(integer value)"),
         sfn("Set a name for the fuel for smelting ores", "name"),
         v("Toggle the verbose mode. While verbose bot will show additional info in console", ""),
         dir("Set mining direction. Possible directions are: f - forward, u - upward, d - downward. Forward is default direction.", "direction");
@@ -759,7 +773,68 @@ public class MinerBot extends BotBase {
 
     static class SmeltingOptions {
         InventoryListComponent smelter;
+        InventoryMetaItem smelterItem;
         InventoryListComponent pile;
-        ArrayList<Pair<Long, Float>> containers = new ArrayList<>();
+        //routing table for lumps sorted by minimum quality
+        float[] thresholds = new float[0];
+        long[] containerIds = new long[0];
+
+        InventoryMetaItem getSmelterItem() {
+            if (smelterItem == null && smelter != null)
+                smelterItem = Utils.getRootItem(smelter);
+            return smelterItem;
+        }
+
+        void addContainer(long containerId, float minQuality) {
+            int index = 0;
+            while (index < thresholds.length && thresholds[index] <= minQuality)
+                index++;
+            float[] newThresholds = new float[thresholds.length + 1];
+            long[] newContainerIds = new long[containerIds.length + 1];
+            System.arraycopy(thresholds, 0, newThresholds, 0, index);
+            System.arraycopy(containerIds, 0, newContainerIds, 0, index);
+            newThresholds[index] = minQuality;
+            newContainerIds[index] = containerId;
+            System.arraycopy(thresholds, index, newThresholds, index + 1, thresholds.length - index);
+            System.arraycopy(containerIds, index, newContainerIds, index + 1, containerIds.length - index);
+            thresholds = newThresholds;
+            containerIds = newContainerIds;
+        }
+
+        /**
+         * @return the index of the container with the highest threshold the quality qualifies for, or -1
+         */
+        int findContainer(float quality) {
+            int low = 0;
+            int high = thresholds.length - 1;
+            int found = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (thresholds[mid] <= quality) {
+                    found = mid;
+                    low = mid + 1;
+                } else
+                    high = mid - 1;
+            }
+            return found;
+        }
+
+        /**
+         * @return lump ids to move for each container index. Null for containers without lumps
+         */
+        List<List<Long>> route(List<InventoryMetaItem> lumps) {
+            List<List<Long>> moveLists = new ArrayList<>(Collections.nCopies(containerIds.length, null));
+            for (InventoryMetaItem lump : lumps) {
+                if (lump.getRarity() != 0)
+                    continue;
+                int index = findContainer(lump.getQuality());
+                if (index == -1)
+                    continue;
+                if (moveLists.get(index) == null)
+                    moveLists.set(index, new ArrayList<>());
+                moveLists.get(index).add(lump.getId());
+            }
+            return moveLists;
+        }
     }
 }
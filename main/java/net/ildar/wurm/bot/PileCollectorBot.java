@@ -9,8 +9,12 @@ import com.wurmonline.client.renderer.gui.ItemListWindow;
 import com.wurmonline.client.renderer.gui.WurmComponent;
 import com.wurmonline.shared.constants.PlayerAction;
 import net.ildar.wurm.BotRegistration;
+import net.ildar.wurm.ContainerFillPlanner;
 import net.ildar.wurm.Mod;
+import net.ildar.wurm.Pipeline;
 import net.ildar.wurm.Utils;
+import net.ildar.wurm.WindowRegistry;
+import net.ildar.wurm.WorldSnapshot;
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 
 import java.util.*;
@@ -18,10 +22,9 @@ import java.util.stream.Collectors;
 
 public class PileCollectorBot extends BotBase {
     private final float MAX_DISTANCE = 4;
-    private final Set<Long> openedPiles = new HashSet<>();
     private InventoryListComponent targetLc;
     private String containerName = "large crate";
-    private int containerCapacity = 300;
+    private final ContainerFillPlanner containerFillPlanner = new ContainerFillPlanner(300, ContainerFillPlanner::countBulkItems);
     private String targetItemName = "dirt";
 
     public PileCollectorBot() {
@@ -44,8 +47,9 @@ public class PileCollectorBot extends BotBase {
             Map<Long, GroundItemCellRenderable> groundItemsMap = ReflectionUtil.getPrivateField(sscc,
                     ReflectionUtil.getField(sscc.getClass(), "groundItems"));
             List<GroundItemCellRenderable> groundItems = groundItemsMap.entrySet().stream().map(Map.Entry::getValue).collect(Collectors.toList());
-            float x = Mod.hud.getWorld().getPlayerPosX();
-            float y = Mod.hud.getWorld().getPlayerPosY();
+            WorldSnapshot snapshot = WorldSnapshot.get();
+            float x = snapshot.posX;
+            float y = snapshot.posY;
             if (groundItems.size() > 0 && targetLc != null) {
                 try {
                     for (GroundItemCellRenderable groundItem : groundItems) {
@@ -54,8 +58,8 @@ public class PileCollectorBot extends BotBase {
                         float itemX = groundItemData.getX();
                         float itemY = groundItemData.getY();
                         if ((Math.sqrt(Math.pow(itemX - x, 2) + Math.pow(itemY - y, 2)) <= MAX_DISTANCE)) {
-                            if (groundItemData.getName().toLowerCase().contains("pile of ") && !openedPiles.contains(groundItemData.getId()))
-                                Mod.hud.sendAction(PlayerAction.OPEN, groundItemData.getId());
+                            if (groundItemData.getName().toLowerCase().contains("pile of "))
+                                getContainerWindows().open(groundItemData.getId());
                             else if (groundItemData.getName().contains(targetItemName))
                                 Mod.hud.sendAction(PlayerAction.TAKE, groundItemData.getId());
 
@@ -64,17 +68,10 @@ public class PileCollectorBot extends BotBase {
                     }
                 } catch (ConcurrentModificationException ignored) {
                 }
-                for (WurmComponent wurmComponent : Mod.getInstance().components) {
-                    if (wurmComponent instanceof ItemListWindow) {
-                        InventoryListComponent ilc = ReflectionUtil.getPrivateField(wurmComponent,
-                                ReflectionUtil.getField(wurmComponent.getClass(), "component"));
-                        if (ilc == null) continue;
-                        InventoryMetaItem rootItem = Utils.getRootItem(ilc);
-                        if (rootItem == null || !rootItem.getBaseName().toLowerCase().contains("pile of")) continue;
-                        openedPiles.add(rootItem.getId());
-                        List<InventoryMetaItem> targetItems = Utils.getInventoryItems(ilc, targetItemName);
-                        moveToContainers(targetItems);
-                    }
+                for (WindowRegistry.Entry pile : WindowRegistry.find("pile of")) {
+                    getContainerWindows().touch(pile.getRootItemId());
+                    List<InventoryMetaItem> targetItems = Utils.getInventoryItems(pile.getComponent(), targetItemName);
+                    moveToContainers(targetItems);
                 }
                 List<InventoryMetaItem> targetItems = Utils.getInventoryItems(targetItemName).stream().filter(item -> item.getBaseName().equals(targetItemName) && item.getRarity() == 0).collect(Collectors.toList());
                 moveToContainers(targetItems);
@@ -90,25 +87,10 @@ public class PileCollectorBot extends BotBase {
                 Utils.consolePrint("No target containers!");
                 return;
             }
-            for (InventoryMetaItem container : containers) {
-                List<InventoryMetaItem> containerContents = container.getChildren();
-                int itemsCount = 0;
-                if (containerContents != null) {
-                    for (InventoryMetaItem contentItem : containerContents) {
-                        String customName = contentItem.getCustomName();
-                        if (customName != null) {
-                            try {
-                                itemsCount += Integer.parseInt(customName.substring(0, customName.length() - 1));
-                            } catch (NumberFormatException ignored) {
-                            }
-                        }
-                    }
-                }
-                if (itemsCount < containerCapacity) {
-                    Mod.hud.getWorld().getServerConnection().sendMoveSomeItems(container.getId(), Utils.getItemIds(targetItems));
-                    return;
-                }
-            }
+            if (containerFillPlanner.move(containers, Utils.getItemIds(targetItems)) > 0)
+                signal(Pipeline.Signal.OUTPUT_FULL);
+            else
+                signal(Pipeline.Signal.PROGRESS);
         }
     }
 
@@ -145,6 +127,7 @@ public class PileCollectorBot extends BotBase {
             }
             this.containerName = containerName.toString();
         }
+        containerFillPlanner.invalidateAll();
         Utils.consolePrint("The target was set with container name - \"" + containerName + "\"");
     }
 
@@ -154,7 +137,8 @@ public class PileCollectorBot extends BotBase {
             return;
         }
         try {
-            containerCapacity = Integer.parseInt(input[0]);
+            int containerCapacity = Integer.parseInt(input[0]);
+            containerFillPlanner.setCapacity(containerCapacity);
             Utils.consolePrint("New container capacity is " + containerCapacity);
         } catch (NumberFormatException e) {
             Utils.consolePrint("Wrong value!");
@@ -2,11 +2,13 @@ package net.ildar.wurm.bot;
 
 import com.wurmonline.client.game.inventory.InventoryMetaItem;
 import com.wurmonline.client.renderer.PickableUnit;
-import com.wurmonline.client.renderer.gui.CreationWindow;
 import com.wurmonline.shared.constants.PlayerAction;
 import net.ildar.wurm.BotRegistration;
 import net.ildar.wurm.Mod;
+import net.ildar.wurm.ToolMaintenance;
+import net.ildar.wurm.ToolSelector;
 import net.ildar.wurm.Utils;
+import net.ildar.wurm.WorldSnapshot;
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 
 import java.util.InputMismatchException;
@@ -27,16 +29,15 @@ public class ProspectorBot extends BotBase {
 
     @Override
     public void work() throws Exception {
-        InventoryMetaItem pickaxe = Utils.getInventoryItem("pickaxe");
-        long pickaxeId;
+        ToolSelector pickaxeSelector = new ToolSelector("pickaxe");
+        registerInventoryListener(pickaxeSelector);
+        InventoryMetaItem pickaxe = pickaxeSelector.get();
         if (pickaxe == null) {
             Utils.consolePrint("You don't have a pickaxe");
             deactivate();
             return;
-        } else {
-            pickaxeId = pickaxe.getId();
+        } else
             Utils.consolePrint(this.getClass().getSimpleName() + " will use " + pickaxe.getBaseName());
-        }
         PickableUnit pickableUnit = ReflectionUtil.getPrivateField(Mod.hud.getSelectBar(),
                 ReflectionUtil.getField(Mod.hud.getSelectBar().getClass(), "selectedUnit"));
         if (pickableUnit == null) {
@@ -46,22 +47,24 @@ public class ProspectorBot extends BotBase {
         } else
             Utils.consolePrint(this.getClass().getSimpleName() + " will prospect " + pickableUnit.getHoverName());
         long caveWallId = pickableUnit.getId();
-        CreationWindow creationWindow = Mod.hud.getCreationWindow();
-        Object progressBar = ReflectionUtil.getPrivateField(creationWindow,
-                ReflectionUtil.getField(creationWindow.getClass(), "progressBar"));
         setStaminaThreshold(0.9f);
         setClicks(3);
         while (isActive()) {
             waitOnPause();
-            float stamina = Mod.hud.getWorld().getPlayer().getStamina();
-            float damage = Mod.hud.getWorld().getPlayer().getDamage();
-            float progress = ReflectionUtil.getPrivateField(progressBar,
-                    ReflectionUtil.getField(progressBar.getClass(), "progress"));
+            WorldSnapshot snapshot = WorldSnapshot.get();
+            float stamina = snapshot.stamina;
+            float damage = snapshot.damage;
+            float progress = snapshot.progress;
             if ((stamina + damage) > staminaThreshold && progress == 0f) {
-                if (pickaxe.getDamage() > 10)
-                    Mod.hud.sendAction(PlayerAction.REPAIR, pickaxeId);
+                pickaxe = pickaxeSelector.get();
+                if (pickaxe == null) {
+                    Utils.consolePrint("You don't have a pickaxe");
+                    deactivate();
+                    return;
+                }
+                long toolId = ToolMaintenance.getUsable(pickaxe, ToolMaintenance.DEFAULT_THRESHOLD).getId();
                 for (int i = 0; i < clicks; i++)
-                    Mod.hud.getWorld().getServerConnection().sendAction(pickaxeId, new long[]{caveWallId}, PlayerAction.PROSPECT);
+                    Mod.hud.getWorld().getServerConnection().sendAction(toolId, new long[]{caveWallId}, PlayerAction.PROSPECT);
             }
             sleep(timeout);
         }
@@ -0,0 +1,271 @@
+package net.ildar.wurm.bot;
+
+import com.wurmonline.client.game.inventory.InventoryMetaItem;
+import com.wurmonline.client.renderer.gui.InventoryListComponent;
+import com.wurmonline.shared.util.MaterialUtilities;
+import net.ildar.wurm.InventoryTracker;
+import net.ildar.wurm.ItemClassifier;
+import net.ildar.wurm.Mod;
+import net.ildar.wurm.Utils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Tools of the {@link ImproverBot} indexed by improve icon and skill, and the queue of items to improve.
+ * Inventory changes are collected on the game thread and applied by the bot at the start of each iteration,
+ * so the iteration doesn't rescan the inventories.
+ * The client doesn't report selection changes, so the selected items are refetched only when items are added to
+ * or removed from the targets, or periodically while the queue is empty.
+ */
+class ToolIndex implements InventoryTracker.Listener {
+    //the selected items are looked for with this period while there are no items to improve
+    private static final long EMPTY_QUEUE_REFRESH_TIMEOUT = 3000;
+
+    private final List<ImproverBot.Tool> tools = new ArrayList<>();
+    //base name and material of an item -> consumed tools the item can be used as
+    private final Map<String, List<ImproverBot.Tool>> consumedToolsByItem = new HashMap<>();
+    private final Map<ImproverBot.ToolSkill, List<ImproverBot.Tool>> toolsBySkill = new EnumMap<>(ImproverBot.ToolSkill.class);
+    private final Map<Integer, Map<ImproverBot.ToolSkill, List<ImproverBot.Tool>>> toolsByIcon = new HashMap<>();
+    private final Set<InventoryListComponent> targets = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final Queue<Change> pendingChanges = new ConcurrentLinkedQueue<>();
+    private final PriorityQueue<InventoryMetaItem> candidates = new PriorityQueue<>(Comparator.comparingDouble(ToolIndex::getEffectiveQuality));
+    private final Set<Long> candidateIds = new HashSet<>();
+    private final Map<Long, InventoryListComponent> candidateSources = new HashMap<>();
+    //pinned items stay in the queue without being selected, e.g. when they come back from the forge
+    private final Set<Long> pinnedIds = ConcurrentHashMap.newKeySet();
+    private volatile boolean selectionChanged = true;
+    private long lastSelectionRefresh;
+
+    static float getEffectiveQuality(InventoryMetaItem item) {
+        return item.getQuality() * (1 - item.getDamage() / 100);
+    }
+
+    void addTool(ImproverBot.Tool tool) {
+        tools.add(tool);
+        consumedToolsByItem.clear();
+        addToIndex(ImproverBot.ToolSkill.UNKNOWN, tool);
+        for (ImproverBot.ToolSkill toolSkill : tool.toolSkills)
+            addToIndex(toolSkill, tool);
+    }
+
+    private void addToIndex(ImproverBot.ToolSkill toolSkill, ImproverBot.Tool tool) {
+        toolsBySkill.computeIfAbsent(toolSkill, k -> new ArrayList<>()).add(tool);
+        toolsByIcon.computeIfAbsent(tool.improveIconId, k -> new EnumMap<>(ImproverBot.ToolSkill.class))
+                .computeIfAbsent(toolSkill, k -> new ArrayList<>())
+                .add(tool);
+    }
+
+    /**
+     * @return tools of provided skill. All tools for unknown skill
+     */
+    List<ImproverBot.Tool> getTools(ImproverBot.ToolSkill toolSkill) {
+        if (toolSkill == null)
+            toolSkill = ImproverBot.ToolSkill.UNKNOWN;
+        return toolsBySkill.getOrDefault(toolSkill, Collections.emptyList());
+    }
+
+    /**
+     * @return the tool to improve the item with. The tools with already found item are preferred
+     */
+    ImproverBot.Tool find(InventoryMetaItem item, ImproverBot.ToolSkill toolSkill) {
+        if (toolSkill == null)
+            toolSkill = ImproverBot.ToolSkill.UNKNOWN;
+        Map<ImproverBot.ToolSkill, List<ImproverBot.Tool>> iconTools = toolsByIcon.get(item.getImproveIconId());
+        if (iconTools == null)
+            return null;
+        ImproverBot.Tool returnTool = null;
+        for (ImproverBot.Tool tool : iconTools.getOrDefault(toolSkill, Collections.emptyList())) {
+            if (!fitsMaterial(tool, item.getMaterialId()))
+                continue;
+            if (tool.itemId == 0) {
+                returnTool = tool;
+                continue;
+            }
+            return tool;
+        }
+        return returnTool;
+    }
+
+    //metal items are improved only with the lumps of the same metal
+    static boolean fitsMaterial(ImproverBot.Tool tool, byte materialId) {
+        return !MaterialUtilities.isMetal(materialId)
+                || !ItemClassifier.is(tool.name, ItemClassifier.Category.LUMP)
+                || tool.name.contains(MaterialUtilities.getMaterialString(materialId));
+    }
+
+    /**
+     * @param weight the weight of improved item. Consumed tools like water are chosen depending on it
+     * @return true if the item of the tool can be used without searching the inventory again
+     */
+    boolean isResolved(ImproverBot.Tool tool, float weight) {
+        if (tool.itemId == 0)
+            return false;
+        return tool.fixed || tool.resolved && tool.resolvedWeight == weight;
+    }
+
+    void setResolved(ImproverBot.Tool tool, long itemId, float weight) {
+        tool.itemId = itemId;
+        tool.resolved = true;
+        tool.resolvedWeight = weight;
+    }
+
+    void addTarget(InventoryListComponent target) {
+        targets.add(target);
+        selectionChanged = true;
+    }
+
+    boolean hasTargets() {
+        return !targets.isEmpty();
+    }
+
+    /**
+     * Must be called by the bot before using the tools or the candidates
+     */
+    void applyChanges() {
+        InventoryListComponent inventory = Mod.hud.getInventoryWindow().getInventoryListComponent();
+        Change change;
+        while ((change = pendingChanges.poll()) != null) {
+            if (change.component == inventory)
+                invalidateTools(change);
+            if (targets.contains(change.component))
+                updateCandidate(change);
+        }
+        if (selectionChanged
+                || candidates.isEmpty() && Math.abs(System.currentTimeMillis() - lastSelectionRefresh) > EMPTY_QUEUE_REFRESH_TIMEOUT)
+            refreshCandidates();
+    }
+
+    boolean hasCandidates() {
+        return !candidates.isEmpty();
+    }
+
+    /**
+     * @return the item with the lowest effective quality. It must be given back with {@link #requeueCandidates(Collection)}
+     */
+    InventoryMetaItem pollCandidate() {
+        return candidates.poll();
+    }
+
+    void requeueCandidates(Collection<InventoryMetaItem> items) {
+        for (InventoryMetaItem item : items)
+            if (candidateIds.contains(item.getId()))
+                candidates.add(item);
+    }
+
+    /**
+     * @return queued items in no particular order
+     */
+    List<InventoryMetaItem> getCandidates() {
+        return new ArrayList<>(candidates);
+    }
+
+    /**
+     * @return the target inventory the candidate was seen in
+     */
+    InventoryListComponent getSource(long itemId) {
+        return candidateSources.get(itemId);
+    }
+
+    void pin(long itemId) {
+        pinnedIds.add(itemId);
+    }
+
+    void unpin(long itemId) {
+        pinnedIds.remove(itemId);
+    }
+
+    @Override
+    public void inventoryChanged(InventoryListComponent component, InventoryMetaItem item, InventoryTracker.ChangeType changeType) {
+        boolean target = targets.contains(component);
+        if (target || Mod.hud != null && component == Mod.hud.getInventoryWindow().getInventoryListComponent())
+            pendingChanges.add(new Change(component, item, changeType));
+        if (target && changeType != InventoryTracker.ChangeType.UPDATED)
+            selectionChanged = true;
+    }
+
+    private void invalidateTools(Change change) {
+        long itemId = change.item.getId();
+        for (ImproverBot.Tool tool : tools) {
+            if (tool.itemId == itemId) {
+                if (change.changeType == InventoryTracker.ChangeType.REMOVED)
+                    tool.itemId = 0;
+                tool.resolved = false;
+            }
+        }
+        if (change.changeType != InventoryTracker.ChangeType.REMOVED)
+            for (ImproverBot.Tool tool : getConsumedTools(change.item))
+                tool.resolved = false;
+    }
+
+    /**
+     * @return the consumed tools the item could be chosen for. The matching is done once per item kind
+     */
+    private List<ImproverBot.Tool> getConsumedTools(InventoryMetaItem item) {
+        return consumedToolsByItem.computeIfAbsent(item.getBaseName() + "/" + item.getMaterialId(), key -> {
+            List<ImproverBot.Tool> consumedTools = new ArrayList<>();
+            for (ImproverBot.Tool tool : tools)
+                if (!tool.fixed && !Utils.getInventoryItems(Collections.singletonList(item), tool.name).isEmpty())
+                    consumedTools.add(tool);
+            return consumedTools;
+        });
+    }
+
+    private void updateCandidate(Change change) {
+        long itemId = change.item.getId();
+        if (!candidateIds.contains(itemId) && !pinnedIds.contains(itemId))
+            return;
+        candidates.removeIf(item -> item.getId() == itemId);
+        if (change.changeType == InventoryTracker.ChangeType.REMOVED) {
+            candidateIds.remove(itemId);
+            candidateSources.remove(itemId);
+        } else {
+            candidateIds.add(itemId);
+            candidateSources.put(itemId, change.component);
+            candidates.add(change.item);
+        }
+    }
+
+    private void refreshCandidates() {
+        selectionChanged = false;
+        lastSelectionRefresh = System.currentTimeMillis();
+        List<InventoryMetaItem> pinnedItems = new ArrayList<>();
+        for (InventoryMetaItem item : candidates)
+            if (pinnedIds.contains(item.getId()))
+                pinnedItems.add(item);
+        Map<Long, InventoryListComponent> pinnedSources = new HashMap<>();
+        for (InventoryMetaItem item : pinnedItems)
+            pinnedSources.put(item.getId(), candidateSources.get(item.getId()));
+        candidates.clear();
+        candidateIds.clear();
+        candidateSources.clear();
+        for (InventoryMetaItem item : pinnedItems) {
+            candidateIds.add(item.getId());
+            candidateSources.put(item.getId(), pinnedSources.get(item.getId()));
+            candidates.add(item);
+        }
+        for (InventoryListComponent target : targets) {
+            List<InventoryMetaItem> selectedItems = Utils.getSelectedItems(target, false, true);
+            if (selectedItems == null)
+                continue;
+            for (InventoryMetaItem item : selectedItems)
+                if (item != null && candidateIds.add(item.getId())) {
+                    candidateSources.put(item.getId(), target);
+                    candidates.add(item);
+                }
+        }
+    }
+
+    private static class Change {
+        final InventoryListComponent component;
+        final InventoryMetaItem item;
+        final InventoryTracker.ChangeType changeType;
+
+        Change(InventoryListComponent component, InventoryMetaItem item, InventoryTracker.ChangeType changeType) {
+            this.component = component;
+            this.item = item;
+            this.changeType = changeType;
+        }
+    }
+}
@@ -1,20 +1,21 @@
 package net.ildar.wurm.bot;
 
 import com.wurmonline.client.comm.ServerConnectionListenerClass;
-import com.wurmonline.client.game.PlayerObj;
 import com.wurmonline.client.game.World;
 import com.wurmonline.client.game.inventory.InventoryMetaItem;
 import com.wurmonline.client.renderer.GroundItemData;
 import com.wurmonline.client.renderer.cell.GroundItemCellRenderable;
-import com.wurmonline.client.renderer.gui.CreationWindow;
 import com.wurmonline.mesh.FoliageAge;
 import com.wurmonline.mesh.Tiles;
 import com.wurmonline.mesh.TreeData;
 import com.wurmonline.shared.constants.PlayerAction;
 import javafx.util.Pair;
+import net.ildar.wurm.ActionSlots;
 import net.ildar.wurm.BotRegistration;
 import net.ildar.wurm.Mod;
+import net.ildar.wurm.ToolSelector;
 import net.ildar.wurm.Utils;
+import net.ildar.wurm.WorldSnapshot;
 import org.gotti.wurmunlimited.modloader.ReflectionUtil;
 
 import java.util.ArrayList;
@@ -67,10 +68,9 @@ public class TreeCutterBot extends BotBase {
         setStaminaThreshold(0.96f);
         setMaxActions(Utils.getMaxActionNumber());
         World world = Mod.hud.getWorld();
-        PlayerObj player = world.getPlayer();
         lastActionFinishedTime = System.currentTimeMillis();
 
-        InventoryMetaItem hatchet = Utils.getInventoryItem("hatchet");
+        InventoryMetaItem hatchet = ToolSelector.findBest("hatchet");
 
         if (hatchet == null) {
             Utils.consolePrint("You don't have a hatchet! " + this.getClass().getSimpleName() + " won't start");
@@ -80,26 +80,26 @@ public class TreeCutterBot extends BotBase {
             hatchetId = hatchet.getId();
             Utils.consolePrint(this.getClass().getSimpleName() + " will use " + hatchet.getDisplayName() + " with QL:" + hatchet.getQuality() + " DMG:" + hatchet.getDamage());
         }
-        CreationWindow creationWindow = Mod.hud.getCreationWindow();
-        Object progressBar = ReflectionUtil.getPrivateField(creationWindow, ReflectionUtil.getField(creationWindow.getClass(), "progressBar"));
 
         ServerConnectionListenerClass sscc = Mod.hud.getWorld().getServerConnection().getServerConnectionListener();
         registerEventProcessors();
         while (isActive()) {
             waitOnPause();
-            float progress = ReflectionUtil.getPrivateField(progressBar, ReflectionUtil.getField(progressBar.getClass(), "progress"));
+            WorldSnapshot snapshot = WorldSnapshot.get();
+            float progress = snapshot.progress;
 
-            float stamina = player.getStamina();
-            float damage = player.getDamage();
+            float stamina = snapshot.stamina;
+            float damage = snapshot.damage;
 
             if (Math.abs(lastActionFinishedTime - System.currentTimeMillis()) > 10000 && (stamina + damage) > staminaThreshold)
                 queuedTiles.clear();
 
             if ((stamina + damage) > staminaThreshold && queuedTiles.size() == 0) {
                 int[][] checkedtiles = Utils.getAreaCoordinates();
+                int actionLimit = Math.min(maxActions, ActionSlots.getShare());
                 int tileIndex = -1;
 
-                while (++tileIndex < 9 && queuedTiles.size() < maxActions) {
+                while (++tileIndex < 9 && queuedTiles.size() < actionLimit) {
                     Pair<Integer, Integer> coordsPair = new Pair<>(checkedtiles[tileIndex][0], checkedtiles[tileIndex][1]);
                     if (queuedTiles.contains(coordsPair))
                         continue;
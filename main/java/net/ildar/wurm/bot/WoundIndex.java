@@ -0,0 +1,116 @@
+package net.ildar.wurm.bot;
+
+import com.wurmonline.client.game.inventory.InventoryMetaItem;
+import com.wurmonline.client.renderer.gui.InventoryListComponent;
+import net.ildar.wurm.InventoryTracker;
+import net.ildar.wurm.Mod;
+import net.ildar.wurm.Utils;
+
+import java.util.*;
+
+/**
+ * Untreated wounds of the player and the cotton in the inventory for {@link HealingBot}.
+ * The inventory is walked once, after that the index is updated by {@link InventoryTracker} events.
+ */
+class WoundIndex implements InventoryTracker.Listener {
+    private static final Set<String> WOUND_NAMES = new HashSet<>(Arrays.asList("Cut", "Bite", "Bruise", "Burn", "Hole", "Acid", "Infection"));
+    //a treatment is considered lost if the wound wasn't bandaged in this time
+    private static final long TREATMENT_TIMEOUT = 30000;
+
+    private final Map<Long, InventoryMetaItem> wounds = new HashMap<>();
+    private final Map<Long, InventoryMetaItem> cottons = new LinkedHashMap<>();
+    private final Map<Long, Long> treatments = new HashMap<>();
+    private InventoryListComponent inventory;
+
+    synchronized void load() {
+        inventory = Mod.hud.getInventoryWindow().getInventoryListComponent();
+        wounds.clear();
+        cottons.clear();
+        treatments.clear();
+        Deque<InventoryMetaItem> items = new ArrayDeque<>();
+        InventoryMetaItem rootItem = Utils.getRootItem(inventory);
+        if (rootItem != null)
+            items.add(rootItem);
+        InventoryMetaItem item;
+        while ((item = items.poll()) != null) {
+            update(item);
+            if (item.getChildren() != null)
+                items.addAll(item.getChildren());
+        }
+    }
+
+    /**
+     * @return any cotton in the inventory or null
+     */
+    synchronized InventoryMetaItem getCotton() {
+        return cottons.isEmpty() ? null : cottons.values().iterator().next();
+    }
+
+    /**
+     * @return true if there are no untreated wounds and no treatments in progress
+     */
+    synchronized boolean isEmpty(float minDamage) {
+        expireTreatments();
+        if (!treatments.isEmpty())
+            return false;
+        for (InventoryMetaItem wound : wounds.values())
+            if (wound.getDamage() > minDamage)
+                return false;
+        return true;
+    }
+
+    synchronized int getTreatmentCount() {
+        expireTreatments();
+        return treatments.size();
+    }
+
+    /**
+     * Marks the most damaged untreated wounds as being treated
+     *
+     * @return up to provided number of wounds in order of their damage
+     */
+    synchronized List<InventoryMetaItem> pollWounds(float minDamage, int count) {
+        expireTreatments();
+        PriorityQueue<InventoryMetaItem> queue = new PriorityQueue<>(Comparator.comparingDouble(InventoryMetaItem::getDamage).reversed());
+        for (InventoryMetaItem wound : wounds.values())
+            if (wound.getDamage() > minDamage && !treatments.containsKey(wound.getId()))
+                queue.add(wound);
+        List<InventoryMetaItem> result = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        while (result.size() < count && !queue.isEmpty()) {
+            InventoryMetaItem wound = queue.poll();
+            treatments.put(wound.getId(), now);
+            result.add(wound);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void inventoryChanged(InventoryListComponent component, InventoryMetaItem item, InventoryTracker.ChangeType changeType) {
+        if (component != inventory)
+            return;
+        if (changeType == InventoryTracker.ChangeType.REMOVED) {
+            wounds.remove(item.getId());
+            cottons.remove(item.getId());
+            treatments.remove(item.getId());
+        } else
+            update(item);
+    }
+
+    private void update(InventoryMetaItem item) {
+        long id = item.getId();
+        if (WOUND_NAMES.contains(item.getBaseName())) {
+            if (item.getDisplayName().contains("bandaged")) {
+                wounds.remove(id);
+                treatments.remove(id);
+            } else
+                wounds.put(id, item);
+        } else if (item.getBaseName().equals("cotton"))
+            cottons.put(id, item);
+    }
+
+    private void expireTreatments() {
+        long now = System.currentTimeMillis();
+        treatments.values().removeIf(time -> Math.abs(now - time) > TREATMENT_TIMEOUT);
+    }
+}